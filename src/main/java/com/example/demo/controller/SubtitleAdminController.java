@@ -0,0 +1,136 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.AudioDownloadManager;
+import com.example.demo.service.AudioPeaksService;
+import com.example.demo.service.AudioStreamService;
+import com.example.demo.service.BatchIngestService;
+import com.example.demo.service.SubtitleDirectoryIndex;
+import com.example.demo.service.SubtitleFileService;
+import com.example.demo.service.SubtitleStorageMigration;
+import com.example.demo.service.SubtitleStorageQuota;
+import com.example.demo.service.SubtitleJobService;
+import com.example.demo.service.SubtitleService;
+import com.example.demo.service.SubtitleTrackCache;
+import com.example.demo.service.VideoMetaCache;
+import com.example.demo.service.YtDlpScheduler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+import xyz.erupt.core.annotation.EruptRouter;
+import xyz.erupt.core.constant.EruptRestPath;
+
+import java.util.Map;
+
+/**
+ * Subtitle maintenance endpoints for the admin (requires an Erupt login).
+ */
+@RestController
+@RequestMapping(EruptRestPath.ERUPT_API + "/subtitle")
+public class SubtitleAdminController {
+
+    @Autowired
+    private SubtitleTrackCache trackCache;
+
+    @Autowired
+    private SubtitleJobService subtitleJobService;
+
+    @Autowired
+    private SubtitleService subtitleService;
+
+    @Autowired
+    private BatchIngestService batchIngestService;
+
+    @Autowired
+    private YtDlpScheduler ytDlpScheduler;
+
+    @Autowired
+    private VideoMetaCache videoMetaCache;
+
+    @Autowired
+    private SubtitleDirectoryIndex directoryIndex;
+
+    @Autowired
+    private SubtitleStorageMigration storageMigration;
+
+    @Autowired
+    private SubtitleFileService subtitleFileService;
+
+    @Autowired
+    private AudioStreamService audioStreamService;
+
+    @Autowired
+    private AudioDownloadManager audioDownloadManager;
+
+    @Autowired
+    private AudioPeaksService audioPeaksService;
+
+    @Autowired
+    private SubtitleStorageQuota storageQuota;
+
+    @GetMapping("/cache")
+    @EruptRouter(verifyType = EruptRouter.VerifyType.LOGIN)
+    public Map<String, Object> cacheStats() {
+        return trackCache.stats();
+    }
+
+    @GetMapping("/jobs")
+    @EruptRouter(verifyType = EruptRouter.VerifyType.LOGIN)
+    public Map<String, Object> jobStats() {
+        Map<String, Object> stats = subtitleJobService.stats();
+        stats.putAll(subtitleService.stats());
+        stats.putAll(batchIngestService.stats());
+        return stats;
+    }
+
+    /**
+     * yt-dlp process slots, queue depth per priority, timeouts and kills.
+     */
+    @GetMapping("/ytdlp")
+    @EruptRouter(verifyType = EruptRouter.VerifyType.LOGIN)
+    public Map<String, Object> ytDlpStats() {
+        return ytDlpScheduler.stats();
+    }
+
+    @GetMapping("/meta")
+    @EruptRouter(verifyType = EruptRouter.VerifyType.LOGIN)
+    public Map<String, Object> metaCacheStats() {
+        return videoMetaCache.stats();
+    }
+
+    @GetMapping("/files")
+    @EruptRouter(verifyType = EruptRouter.VerifyType.LOGIN)
+    public Map<String, Object> fileIndexStats() {
+        Map<String, Object> stats = directoryIndex.stats();
+        stats.putAll(storageMigration.stats());
+        stats.putAll(subtitleFileService.writeStats());
+        stats.putAll(audioStreamService.stats());
+        stats.putAll(audioDownloadManager.stats());
+        stats.putAll(audioPeaksService.stats());
+        stats.putAll(storageQuota.stats());
+        return stats;
+    }
+
+    /**
+     * Start moving flat files into the storage layout again, e.g. after a
+     * run left files behind.
+     */
+    @PostMapping("/files/migrate")
+    @EruptRouter(verifyType = EruptRouter.VerifyType.LOGIN)
+    public Map<String, Object> migrateFiles() {
+        Thread t = new Thread(storageMigration::migrateAll, "sublingo-migration");
+        t.setDaemon(true);
+        t.start();
+        return storageMigration.stats();
+    }
+
+    /**
+     * Invalidate the cached tracks of one video, or all of them without videoId.
+     */
+    @DeleteMapping("/cache")
+    @EruptRouter(verifyType = EruptRouter.VerifyType.LOGIN)
+    public Map<String, Object> invalidateCache(@RequestParam(value = "videoId", required = false) String videoId) {
+        int removed = trackCache.invalidate(videoId);
+        Map<String, Object> stats = trackCache.stats();
+        stats.put("removed", removed);
+        return stats;
+    }
+}
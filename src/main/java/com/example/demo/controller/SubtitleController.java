@@ -1,18 +1,38 @@
 package com.example.demo.controller;
 
 import com.example.demo.ExampleApplication;
+import com.example.demo.model.subtitle.AudioPeaksVO;
+import com.example.demo.model.subtitle.BatchIngest;
+import com.example.demo.model.subtitle.ProcessedVideo;
+import com.example.demo.model.subtitle.SubtitleJob;
+import com.example.demo.model.subtitle.SubtitleTrack;
 import com.example.demo.model.subtitle.VideoInfoVO;
+import com.example.demo.service.AudioDownloadManager;
+import com.example.demo.service.AudioPeaksService;
+import com.example.demo.service.AudioStreamService;
+import com.example.demo.service.BatchIngestService;
+import com.example.demo.service.SubtitleAligner;
 import com.example.demo.service.SubtitleFileService;
+import com.example.demo.service.SubtitleJobService;
 import com.example.demo.service.SubtitleService;
+import com.example.demo.service.SubtitleStorageQuota;
+import com.example.demo.service.pipeline.PipelineOptions;
+import com.example.demo.utils.SubtitleRenderer;
+import com.example.demo.utils.SubtitleTrackFile;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.support.ResourceRegion;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Logger;
 
 /**
@@ -31,21 +51,197 @@ public class SubtitleController {
     @Autowired
     private SubtitleFileService subtitleFileService;
 
+    @Autowired
+    private SubtitleJobService subtitleJobService;
+
+    @Autowired
+    private BatchIngestService batchIngestService;
+
+    @Autowired
+    private AudioStreamService audioStreamService;
+
+    @Autowired
+    private AudioDownloadManager audioDownloadManager;
+
+    @Autowired
+    private AudioPeaksService audioPeaksService;
+
+    @Autowired
+    private SubtitleStorageQuota storageQuota;
+
+    /**
+     * Optional pipeline parameters: stages (comma separated, e.g.
+     * "align,split,gaps"), maxLen (split length), tolerance (align ms),
+     * alignMode (START/OVERLAP) and joinMany.
+     * refresh=true re-runs yt-dlp even when the stored inputs are fresh.
+     * rawVtt is only filled with raw=true: rendering it is a copy of the
+     * whole file into one String, stream /api/video/subtitle/download
+     * instead. Clients that read rawVtt by default must now pass raw=true.
+     */
     @GetMapping("/info")
-    public VideoInfoVO getVideoInfo(@RequestParam("url") String url) {
+    public VideoInfoVO getVideoInfo(@RequestParam("url") String url,
+            @RequestParam(value = "stages", required = false) String stages,
+            @RequestParam(value = "maxLen", required = false) Integer maxLen,
+            @RequestParam(value = "tolerance", required = false) Long tolerance,
+            @RequestParam(value = "alignMode", required = false) SubtitleAligner.Mode alignMode,
+            @RequestParam(value = "joinMany", required = false) Boolean joinMany,
+            @RequestParam(value = "raw", defaultValue = "false") boolean raw,
+            @RequestParam(value = "refresh", defaultValue = "false") boolean refresh) {
         logger.info("Request received for URL: " + url);
-        VideoInfoVO vo = subtitleService.processVideo(url);
-        logger.info("Successfully processed video: " + vo.getTitle());
+        PipelineOptions options = pipelineOptions(stages, maxLen, tolerance, alignMode, joinMany);
+        ProcessedVideo processed = subtitleService.processVideo(url, options, refresh);
+        logger.info("Successfully processed video: " + processed.getTitle());
+        VideoInfoVO vo = toVideoInfoVO(processed);
+        if (raw && processed.getTrack() != null) {
+            vo.setRawVtt(SubtitleRenderer.renderToString(processed.getTrack(), SubtitleRenderer.Format.SRT));
+        }
         return vo;
     }
 
+    /**
+     * Asynchronous variant of /info: returns the job right away (202), the
+     * work runs on the job pool. Follow it with /jobs/{id}/events (SSE) or
+     * poll /jobs/{id}, then fetch /jobs/{id}/result. Same parameters as /info.
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<SubtitleJob> submitJob(@RequestParam("url") String url,
+            @RequestParam(value = "stages", required = false) String stages,
+            @RequestParam(value = "maxLen", required = false) Integer maxLen,
+            @RequestParam(value = "tolerance", required = false) Long tolerance,
+            @RequestParam(value = "alignMode", required = false) SubtitleAligner.Mode alignMode,
+            @RequestParam(value = "joinMany", required = false) Boolean joinMany,
+            @RequestParam(value = "refresh", defaultValue = "false") boolean refresh) {
+        PipelineOptions options = pipelineOptions(stages, maxLen, tolerance, alignMode, joinMany);
+        try {
+            SubtitleJob job = subtitleJobService.submit(url, options, refresh);
+            return ResponseEntity.accepted().body(job);
+        } catch (RejectedExecutionException e) {
+            logger.warning("Subtitle job queue full, rejecting " + url);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<SubtitleJob> getJob(@PathVariable String jobId) {
+        SubtitleJob job = subtitleJobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> jobEvents(@PathVariable String jobId) {
+        SubtitleJob job = subtitleJobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(subtitleJobService.subscribe(job));
+    }
+
+    /**
+     * Result of a finished job, in the same shape as /info. 202 while it is
+     * still running, 500 with the job (and its error) if it failed.
+     */
+    @GetMapping("/jobs/{jobId}/result")
+    public ResponseEntity<?> getJobResult(@PathVariable String jobId) {
+        SubtitleJob job = subtitleJobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.getStatus() == SubtitleJob.Status.FAILED) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(job);
+        }
+        if (!job.isFinished()) {
+            return ResponseEntity.accepted().body(job);
+        }
+        return ResponseEntity.ok(toVideoInfoVO(job.getResult()));
+    }
+
+    /**
+     * Ingest every video of a playlist or channel URL (at most limit). Same
+     * pipeline parameters as /jobs; poll /batch/{batchId} for the report.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchIngest> submitBatch(@RequestParam("url") String url,
+            @RequestParam(value = "limit", defaultValue = "0") int limit,
+            @RequestParam(value = "stages", required = false) String stages,
+            @RequestParam(value = "maxLen", required = false) Integer maxLen,
+            @RequestParam(value = "tolerance", required = false) Long tolerance,
+            @RequestParam(value = "alignMode", required = false) SubtitleAligner.Mode alignMode,
+            @RequestParam(value = "joinMany", required = false) Boolean joinMany,
+            @RequestParam(value = "refresh", defaultValue = "false") boolean refresh) {
+        PipelineOptions options = pipelineOptions(stages, maxLen, tolerance, alignMode, joinMany);
+        try {
+            BatchIngest batch = batchIngestService.submit(url, options, refresh, limit);
+            return ResponseEntity.accepted().body(batch);
+        } catch (RejectedExecutionException e) {
+            logger.warning("Batch queue full, rejecting " + url);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @GetMapping("/batch/{batchId}")
+    public ResponseEntity<BatchIngest> getBatch(@PathVariable String batchId) {
+        BatchIngest batch = batchIngestService.getBatch(batchId);
+        if (batch == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(batch);
+    }
+
+    // Invalid parameters (unknown stage, maxLen < 1, tolerance < 0) are a 400
+    private PipelineOptions pipelineOptions(String stages, Integer maxLen, Long tolerance,
+            SubtitleAligner.Mode alignMode, Boolean joinMany) {
+        try {
+            return PipelineOptions.defaults()
+                    .withStages(stages)
+                    .setMaxLength(maxLen)
+                    .setToleranceMs(tolerance)
+                    .setAlignMode(alignMode)
+                    .setJoinMany(joinMany);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * JSON boundary: the only place the columnar track is turned into VOs.
+     */
+    private VideoInfoVO toVideoInfoVO(ProcessedVideo processed) {
+        VideoInfoVO vo = new VideoInfoVO();
+        vo.setVideoId(processed.getVideoId());
+        vo.setTitle(processed.getTitle());
+        vo.setDuration(processed.getDuration());
+        vo.setTranslationVtt(null);
+        vo.setSubtitles(processed.getTrack() != null ? processed.getTrack().toItems() : new java.util.ArrayList<>());
+        vo.setStageTimings(processed.getStageTimings());
+        return vo;
+    }
+
+    /**
+     * type=merged is rendered from the processed track straight into the
+     * response, as SRT or (format=vtt) WebVTT. type=source returns the file.
+     */
     @GetMapping("/subtitle/download")
-    public ResponseEntity<Resource> downloadSubtitle(
+    public ResponseEntity<StreamingResponseBody> downloadSubtitle(
             @RequestParam("videoId") String videoId,
-            @RequestParam("type") String type) {
+            @RequestParam("type") String type,
+            @RequestParam(value = "format", defaultValue = "srt") String format) {
 
         String url = "https://www.youtube.com/watch?v=" + videoId;
-        getVideoInfo(url);
+        ProcessedVideo processed = subtitleService.processVideo(url);
+
+        if ("merged".equalsIgnoreCase(type) && processed.getTrack() != null && !processed.getTrack().isEmpty()) {
+            SubtitleTrack track = processed.getTrack();
+            SubtitleRenderer.Format renderFormat = "vtt".equalsIgnoreCase(format) ? SubtitleRenderer.Format.VTT
+                    : SubtitleRenderer.Format.SRT;
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"" + videoId + ".merged." + renderFormat.getExtension() + "\"")
+                    .contentType(MediaType.parseMediaType(renderFormat.getContentType() + ";charset=UTF-8"))
+                    .body(out -> new SubtitleRenderer(renderFormat).render(track, Channels.newChannel(out)));
+        }
 
         java.io.File file = subtitleService.getSubtitleFile(videoId, type);
 
@@ -53,54 +249,104 @@ public class SubtitleController {
             return ResponseEntity.notFound().build();
         }
 
-        Resource resource = new FileSystemResource(file);
-
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION,
                         "attachment; filename=\"" + file.getName() + "\"")
                 .contentType(MediaType.parseMediaType("application/x-subrip"))
-                .body(resource);
+                .contentLength(file.length())
+                .body(out -> Files.copy(file.toPath(), out));
     }
 
     /**
-     * Stream Audio with Range Support (206 Partial Content)
+     * Cues of an already processed video between from and to (ms), read
+     * straight from its binary track file: only the requested range is
+     * read. 404 until the video was processed, 400 for an unknown id.
      */
-    @GetMapping("/audio/{videoId}")
-    public ResponseEntity<ResourceRegion> streamAudio(
-            @PathVariable String videoId,
-            @RequestHeader HttpHeaders headers) throws IOException {
-
-        // 1. Get Audio File (Download if missing - Blocking for MVP)
-        File audioFile = subtitleFileService.getAudioFile(videoId);
-        if (audioFile == null) {
-            audioFile = subtitleFileService.downloadAudio(videoId);
+    @GetMapping("/subtitle/cues")
+    public ResponseEntity<java.util.List<VideoInfoVO.SubtitleItemVO>> getCues(
+            @RequestParam("videoId") String videoId,
+            @RequestParam(value = "from", defaultValue = "0") long from,
+            @RequestParam(value = "to", required = false) Long to) {
+        if (!subtitleFileService.isValidVideoId(videoId)) {
+            return ResponseEntity.badRequest().build();
         }
-
-        if (audioFile == null || !audioFile.exists()) {
+        storageQuota.touch(videoId);
+        SubtitleTrackFile.View track = subtitleFileService.readTrackFile(videoId, null);
+        if (track == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            // Include the cue that is still running at "from"
+            int first = Math.max(0, track.rowAt(from) - 1);
+            int last = to != null ? track.rowAt(to) : track.size();
+            java.util.List<VideoInfoVO.SubtitleItemVO> cues = track.slice(first, last).toItems();
+            if (!cues.isEmpty() && cues.get(0).getEndTime() <= from)
+                cues = cues.subList(1, cues.size());
+            return ResponseEntity.ok(cues);
+        } catch (IOException e) {
+            // Replaced or evicted since the header was read
+            logger.warning("Reading cues of " + videoId + " failed: " + e.getMessage());
             return ResponseEntity.notFound().build();
         }
+    }
 
-        // 2. Prepare Resource
-        Resource resource = new FileSystemResource(audioFile);
-        long contentLength = resource.contentLength();
+    /**
+     * Stream Audio: whole file, single or multiple ranges, conditional
+     * requests (see AudioStreamService). Audio that is not there yet is
+     * downloaded in the background and served while it is written.
+     * format=mp3 asks for an mp3 transcode for clients that cannot play
+     * the native format (m4a, webm, opus).
+     */
+    @GetMapping("/audio/{videoId}")
+    public void streamAudio(@PathVariable String videoId,
+            @RequestParam(value = "format", required = false) String format,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
 
-        // 3. Create ResourceRegion based on Range Header
-        HttpRange range = headers.getRange().isEmpty() ? null : headers.getRange().get(0);
-        ResourceRegion region;
+        // Not evicted while streaming
+        try (SubtitleStorageQuota.Pin pin = storageQuota.pin(videoId)) {
+            // 1. Get Audio File
+            File audioFile = subtitleFileService.getAudioFile(videoId, format);
+            if (audioFile == null || !audioFile.exists()) {
+                // Download (or transcode) if missing, serving the part that is already written
+                AudioDownloadManager.Download download;
+                try {
+                    download = audioDownloadManager.download(videoId, format);
+                } catch (IllegalArgumentException e) {
+                    response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+                    return;
+                }
+                audioFile = download.getFile();
+                if (audioFile == null) {
+                    audioStreamService.serveGrowing(download, request, response);
+                    return;
+                }
+            }
 
-        if (range != null) {
-            long start = range.getRangeStart(contentLength);
-            long end = range.getRangeEnd(contentLength);
-            long rangeLength = Math.min(1024 * 1024, end - start + 1); // 1MB chunk or rest
-            region = new ResourceRegion(resource, start, rangeLength);
-        } else {
-            long rangeLength = Math.min(1024 * 1024, contentLength); // 1MB default chunk
-            region = new ResourceRegion(resource, 0, rangeLength);
+            // 2. Serve it straight from the file
+            audioStreamService.serve(audioFile, request, response);
         }
+    }
 
-        // 4. Return 206 Partial Content
-        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
-                .contentType(MediaType.parseMediaType("audio/mpeg")) // mp3
-                .body(region);
+    /**
+     * Waveform peaks of the audio between from and to (ms): at a zoom level
+     * (0 = finest), at the finest level with at most peaksPerSecond, or
+     * without either the whole track at the coarsest level. 202 while they
+     * are being computed, 404 if there is no audio (yet).
+     */
+    @GetMapping("/audio/{videoId}/peaks")
+    public ResponseEntity<AudioPeaksVO> getAudioPeaks(@PathVariable String videoId,
+            @RequestParam(value = "zoom", required = false) Integer zoom,
+            @RequestParam(value = "peaksPerSecond", required = false) Double peaksPerSecond,
+            @RequestParam(value = "from", defaultValue = "0") long from,
+            @RequestParam(value = "to", required = false) Long to) {
+        storageQuota.touch(videoId);
+        AudioPeaksVO peaks = audioPeaksService.slice(videoId, zoom, peaksPerSecond, from, to);
+        if (peaks != null) {
+            return ResponseEntity.ok(peaks);
+        }
+        if (audioPeaksService.schedule(videoId)) {
+            return ResponseEntity.accepted().build();
+        }
+        return ResponseEntity.notFound().build();
     }
 }
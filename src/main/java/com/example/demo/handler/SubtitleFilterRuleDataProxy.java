@@ -0,0 +1,32 @@
+package com.example.demo.handler;
+
+import com.example.demo.model.subtitle.SubtitleFilterRule;
+import com.example.demo.service.SubtitleFilterEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import xyz.erupt.annotation.fun.DataProxy;
+
+/**
+ * Recompiles the subtitle filter rules whenever they are edited in the admin.
+ */
+@Component
+public class SubtitleFilterRuleDataProxy implements DataProxy<SubtitleFilterRule> {
+
+    @Autowired
+    private SubtitleFilterEngine filterEngine;
+
+    @Override
+    public void afterAdd(SubtitleFilterRule rule) {
+        filterEngine.reload();
+    }
+
+    @Override
+    public void afterUpdate(SubtitleFilterRule rule) {
+        filterEngine.reload();
+    }
+
+    @Override
+    public void afterDelete(SubtitleFilterRule rule) {
+        filterEngine.reload();
+    }
+}
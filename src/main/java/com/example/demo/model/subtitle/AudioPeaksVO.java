@@ -0,0 +1,89 @@
+package com.example.demo.model.subtitle;
+
+/**
+ * A slice of a video's waveform: min/max pairs (-128..127) of consecutive
+ * peaks, each covering samplesPerPeak samples at sampleRate.
+ */
+public class AudioPeaksVO {
+    private String videoId;
+    private int sampleRate;
+    private int samplesPerPeak;
+    private int zoom; // level, 0 = finest
+    private int zoomLevels;
+    private int totalPeaks; // on this level
+    private int start; // index of the first peak
+    private long startTime; // milliseconds
+    private int[] peaks; // min, max, min, max, ...
+
+    public String getVideoId() {
+        return videoId;
+    }
+
+    public void setVideoId(String videoId) {
+        this.videoId = videoId;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public int getSamplesPerPeak() {
+        return samplesPerPeak;
+    }
+
+    public void setSamplesPerPeak(int samplesPerPeak) {
+        this.samplesPerPeak = samplesPerPeak;
+    }
+
+    public int getZoom() {
+        return zoom;
+    }
+
+    public void setZoom(int zoom) {
+        this.zoom = zoom;
+    }
+
+    public int getZoomLevels() {
+        return zoomLevels;
+    }
+
+    public void setZoomLevels(int zoomLevels) {
+        this.zoomLevels = zoomLevels;
+    }
+
+    public int getTotalPeaks() {
+        return totalPeaks;
+    }
+
+    public void setTotalPeaks(int totalPeaks) {
+        this.totalPeaks = totalPeaks;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public void setStart(int start) {
+        this.start = start;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public int[] getPeaks() {
+        return peaks;
+    }
+
+    public void setPeaks(int[] peaks) {
+        this.peaks = peaks;
+    }
+}
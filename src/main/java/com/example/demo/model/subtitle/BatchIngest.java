@@ -0,0 +1,168 @@
+package com.example.demo.model.subtitle;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A playlist / channel ingestion (see BatchIngestService): the expanded
+ * videos and how each of them went. Updated by worker threads, read by
+ * request threads.
+ */
+public class BatchIngest {
+
+    public enum Status {
+        EXPANDING, RUNNING, DONE, FAILED
+    }
+
+    public static class Item {
+        private final String videoId;
+        private final String title;
+        private volatile SubtitleJob.Status status = SubtitleJob.Status.QUEUED;
+        private volatile String error;
+        private volatile int cues;
+        private volatile long elapsedMs;
+
+        public Item(String videoId, String title) {
+            this.videoId = videoId;
+            this.title = title;
+        }
+
+        public String getVideoId() {
+            return videoId;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public SubtitleJob.Status getStatus() {
+            return status;
+        }
+
+        public void setStatus(SubtitleJob.Status status) {
+            this.status = status;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+
+        public int getCues() {
+            return cues;
+        }
+
+        public void setCues(int cues) {
+            this.cues = cues;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+
+        public void setElapsedMs(long elapsedMs) {
+            this.elapsedMs = elapsedMs;
+        }
+    }
+
+    private final String id;
+    private final String url;
+    private final long createdAt;
+    private volatile Status status = Status.EXPANDING;
+    private volatile String title;
+    private volatile String error;
+    private volatile long finishedAt;
+    private volatile List<Item> items = Collections.emptyList();
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger finished = new AtomicInteger();
+
+    public BatchIngest(String id, String url) {
+        this.id = id;
+        this.url = url;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+
+    /**
+     * Count a finished item.
+     *
+     * @return true for the last item of the batch
+     */
+    public boolean itemFinished(boolean ok) {
+        (ok ? succeeded : failed).incrementAndGet();
+        return finished.incrementAndGet() == items.size();
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(long finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Item> items) {
+        this.items = Collections.unmodifiableList(items);
+    }
+
+    public int getTotal() {
+        return items.size();
+    }
+
+    public int getSucceeded() {
+        return succeeded.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.demo.model.subtitle;
+
+import java.util.List;
+
+/**
+ * Result of processing a video's subtitles.
+ * Keeps the track in columnar form; conversion to {@link VideoInfoVO} happens
+ * only at the HTTP boundary.
+ */
+public class ProcessedVideo {
+    private String videoId;
+    private String title;
+    private long duration; // seconds
+    private SubtitleTrack track;
+    private List<StageTiming> stageTimings;
+
+    // Getters and Setters
+    public String getVideoId() {
+        return videoId;
+    }
+
+    public void setVideoId(String videoId) {
+        this.videoId = videoId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    public SubtitleTrack getTrack() {
+        return track;
+    }
+
+    public void setTrack(SubtitleTrack track) {
+        this.track = track;
+    }
+
+    public List<StageTiming> getStageTimings() {
+        return stageTimings;
+    }
+
+    public void setStageTimings(List<StageTiming> stageTimings) {
+        this.stageTimings = stageTimings;
+    }
+}
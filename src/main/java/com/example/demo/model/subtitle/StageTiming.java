@@ -0,0 +1,40 @@
+package com.example.demo.model.subtitle;
+
+/**
+ * Per-stage statistics of one pipeline run. Time is exclusive: time spent in
+ * later stages is not counted.
+ */
+public class StageTiming {
+    private final String stage;
+    private final int cuesIn;
+    private final int cuesOut;
+    private final long micros;
+
+    public StageTiming(String stage, int cuesIn, int cuesOut, long micros) {
+        this.stage = stage;
+        this.cuesIn = cuesIn;
+        this.cuesOut = cuesOut;
+        this.micros = micros;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public int getCuesIn() {
+        return cuesIn;
+    }
+
+    public int getCuesOut() {
+        return cuesOut;
+    }
+
+    public long getMicros() {
+        return micros;
+    }
+
+    @Override
+    public String toString() {
+        return stage + "[" + cuesIn + "->" + cuesOut + ", " + micros + "us]";
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.demo.model.subtitle;
+
+import com.example.demo.handler.SubtitleFilterRuleDataProxy;
+import xyz.erupt.annotation.Erupt;
+import xyz.erupt.annotation.EruptField;
+import xyz.erupt.annotation.sub_field.Edit;
+import xyz.erupt.annotation.sub_field.EditType;
+import xyz.erupt.annotation.sub_field.View;
+import xyz.erupt.annotation.sub_field.sub_edit.ChoiceType;
+import xyz.erupt.annotation.sub_field.sub_edit.Search;
+import xyz.erupt.annotation.sub_field.sub_edit.VL;
+import xyz.erupt.jpa.model.BaseModel;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+
+/**
+ * Noise / filler rule applied to every parsed subtitle cue.
+ * Rules are compiled by SubtitleFilterEngine and reloaded on every change.
+ *
+ * Value meaning per type:
+ * - NUMERIC: max digit count of a digits-only cue
+ * - BRACKET: open + close char, e.g. "[]" or "（）"
+ * - SHORT: max length of the (trimmed) cue
+ * - FILLER: a word that is the whole cue (case-insensitive)
+ * - KEYWORD: a substring anywhere in the cue (case-insensitive)
+ */
+@Table(name = "subtitle_filter_rule")
+@Entity
+@Erupt(name = "字幕过滤规则", orderBy = "ruleType asc", dataProxy = SubtitleFilterRuleDataProxy.class)
+public class SubtitleFilterRule extends BaseModel {
+
+    public static final String TYPE_NUMERIC = "NUMERIC";
+    public static final String TYPE_BRACKET = "BRACKET";
+    public static final String TYPE_SHORT = "SHORT";
+    public static final String TYPE_FILLER = "FILLER";
+    public static final String TYPE_KEYWORD = "KEYWORD";
+
+    public static final String ACTION_DROP = "DROP";
+    public static final String ACTION_AUXILIARY = "AUXILIARY";
+
+    @EruptField(views = @View(title = "规则类型"), edit = @Edit(title = "规则类型", type = EditType.CHOICE, choiceType = @ChoiceType(vl = {
+            @VL(value = TYPE_NUMERIC, label = "纯数字(最大位数)"),
+            @VL(value = TYPE_BRACKET, label = "括号包裹(如 [])"),
+            @VL(value = TYPE_SHORT, label = "过短(最大长度)"),
+            @VL(value = TYPE_FILLER, label = "语气词(整句匹配)"),
+            @VL(value = TYPE_KEYWORD, label = "关键词(包含)")
+    }), notNull = true, search = @Search))
+    private String ruleType;
+
+    @EruptField(views = @View(title = "规则值"), edit = @Edit(title = "规则值", notNull = true, search = @Search(vague = true)))
+    private String ruleValue;
+
+    @EruptField(views = @View(title = "处理方式"), edit = @Edit(title = "处理方式", type = EditType.CHOICE, choiceType = @ChoiceType(vl = {
+            @VL(value = ACTION_DROP, label = "删除"),
+            @VL(value = ACTION_AUXILIARY, label = "合并到上一条")
+    }), notNull = true, search = @Search))
+    private String action;
+
+    @EruptField(views = @View(title = "启用状态"), edit = @Edit(title = "是否启用", notNull = true))
+    private Boolean enabled = true;
+
+    public SubtitleFilterRule() {
+    }
+
+    public SubtitleFilterRule(String ruleType, String ruleValue, String action) {
+        this.ruleType = ruleType;
+        this.ruleValue = ruleValue;
+        this.action = action;
+    }
+
+    // Getters and Setters
+    public String getRuleType() {
+        return ruleType;
+    }
+
+    public void setRuleType(String ruleType) {
+        this.ruleType = ruleType;
+    }
+
+    public String getRuleValue() {
+        return ruleValue;
+    }
+
+    public void setRuleValue(String ruleValue) {
+        this.ruleValue = ruleValue;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.demo.model.subtitle;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * An asynchronous video processing job (see SubtitleJobService).
+ * Updated by the worker thread, read by request threads.
+ */
+public class SubtitleJob {
+
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    private final String id;
+    private final String url;
+    private final long createdAt;
+    private volatile Status status = Status.QUEUED;
+    private volatile String stage;
+    private volatile int progress; // 0..100
+    private volatile String videoId;
+    private volatile String error;
+    private volatile long finishedAt;
+    private volatile ProcessedVideo result;
+
+    public SubtitleJob(String id, String url) {
+        this.id = id;
+        this.url = url;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public void setStage(String stage) {
+        this.stage = stage;
+    }
+
+    public int getProgress() {
+        return progress;
+    }
+
+    public void setProgress(int progress) {
+        this.progress = progress;
+    }
+
+    public String getVideoId() {
+        return videoId;
+    }
+
+    public void setVideoId(String videoId) {
+        this.videoId = videoId;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(long finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    @JsonIgnore
+    public ProcessedVideo getResult() {
+        return result;
+    }
+
+    public void setResult(ProcessedVideo result) {
+        this.result = result;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.demo.model.subtitle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What a processed video was built from, stored as <videoId>.manifest.json.
+ * Lets a request decide locally whether yt-dlp needs to run again.
+ */
+public class SubtitleManifest {
+    private String videoId;
+    private String title;
+    private long duration; // seconds
+    private int pipelineVersion;
+    private long fetchedAt; // epoch millis of the last yt-dlp metadata fetch
+    private List<InputFile> inputs = new ArrayList<>();
+
+    public static class InputFile {
+        private String role; // source / target
+        private String name;
+        private long size;
+        private long lastModified;
+        private String sha256;
+
+        public String getRole() {
+            return role;
+        }
+
+        public void setRole(String role) {
+            this.role = role;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public void setSize(long size) {
+            this.size = size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public void setLastModified(long lastModified) {
+            this.lastModified = lastModified;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public void setSha256(String sha256) {
+            this.sha256 = sha256;
+        }
+    }
+
+    // Getters and Setters
+    public String getVideoId() {
+        return videoId;
+    }
+
+    public void setVideoId(String videoId) {
+        this.videoId = videoId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    public int getPipelineVersion() {
+        return pipelineVersion;
+    }
+
+    public void setPipelineVersion(int pipelineVersion) {
+        this.pipelineVersion = pipelineVersion;
+    }
+
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    public void setFetchedAt(long fetchedAt) {
+        this.fetchedAt = fetchedAt;
+    }
+
+    public List<InputFile> getInputs() {
+        return inputs;
+    }
+
+    public void setInputs(List<InputFile> inputs) {
+        this.inputs = inputs;
+    }
+}
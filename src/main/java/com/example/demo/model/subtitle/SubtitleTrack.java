@@ -0,0 +1,291 @@
+package com.example.demo.model.subtitle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Columnar, primitive representation of a subtitle track.
+ *
+ * Instead of one {@link VideoInfoVO.SubtitleItemVO} per cue, timestamps and
+ * indexes live in primitive arrays and all texts (original + translation) are
+ * appended to one shared char arena addressed by offset/length.
+ * Rows are addressed by position (0..size-1).
+ *
+ * Not thread-safe.
+ */
+public class SubtitleTrack {
+
+    private static final int NO_TEXT = -1;
+
+    private int size;
+    private int[] indexes;
+    private long[] startTimes; // milliseconds
+    private long[] endTimes; // milliseconds
+    private int[] originalOffsets;
+    private int[] originalLengths;
+    private int[] translationOffsets;
+    private int[] translationLengths; // NO_TEXT when there is no translation
+
+    private char[] text;
+    private int textLength;
+
+    public SubtitleTrack() {
+        this(64);
+    }
+
+    public SubtitleTrack(int capacity) {
+        capacity = Math.max(capacity, 4);
+        indexes = new int[capacity];
+        startTimes = new long[capacity];
+        endTimes = new long[capacity];
+        originalOffsets = new int[capacity];
+        originalLengths = new int[capacity];
+        translationOffsets = new int[capacity];
+        translationLengths = new int[capacity];
+        text = new char[capacity * 32];
+    }
+
+    /**
+     * Build a track from a sequence of cues (e.g. a {@code CueReader}).
+     */
+    public static SubtitleTrack from(Iterator<VideoInfoVO.SubtitleItemVO> items) {
+        SubtitleTrack track = new SubtitleTrack();
+        while (items.hasNext()) {
+            VideoInfoVO.SubtitleItemVO item = items.next();
+            int row = track.add(item.getIndex(), item.getStartTime(), item.getEndTime(), item.getOriginal());
+            if (item.getTranslation() != null) {
+                track.setTranslation(row, item.getTranslation());
+            }
+        }
+        return track;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Append a cue, returns its row.
+     */
+    public int add(int index, long startTime, long endTime, CharSequence original) {
+        ensureRows(size + 1);
+        int row = size++;
+        indexes[row] = index;
+        startTimes[row] = startTime;
+        endTimes[row] = endTime;
+        originalOffsets[row] = appendText(original);
+        originalLengths[row] = original.length();
+        translationOffsets[row] = 0;
+        translationLengths[row] = NO_TEXT;
+        return row;
+    }
+
+    /**
+     * Append a copy of a row of another track (texts are copied arena to arena).
+     */
+    public int addRow(SubtitleTrack other, int otherRow) {
+        ensureRows(size + 1);
+        int row = size++;
+        indexes[row] = other.indexes[otherRow];
+        startTimes[row] = other.startTimes[otherRow];
+        endTimes[row] = other.endTimes[otherRow];
+        originalOffsets[row] = appendText(other.text, other.originalOffsets[otherRow], other.originalLengths[otherRow]);
+        originalLengths[row] = other.originalLengths[otherRow];
+        if (other.hasTranslation(otherRow)) {
+            translationOffsets[row] = appendText(other.text, other.translationOffsets[otherRow],
+                    other.translationLengths[otherRow]);
+            translationLengths[row] = other.translationLengths[otherRow];
+        } else {
+            translationOffsets[row] = 0;
+            translationLengths[row] = NO_TEXT;
+        }
+        return row;
+    }
+
+    public int getIndex(int row) {
+        return indexes[row];
+    }
+
+    public void setIndex(int row, int index) {
+        indexes[row] = index;
+    }
+
+    public long getStartTime(int row) {
+        return startTimes[row];
+    }
+
+    public void setStartTime(int row, long startTime) {
+        startTimes[row] = startTime;
+    }
+
+    public long getEndTime(int row) {
+        return endTimes[row];
+    }
+
+    public void setEndTime(int row, long endTime) {
+        endTimes[row] = endTime;
+    }
+
+    public String getOriginal(int row) {
+        return new String(text, originalOffsets[row], originalLengths[row]);
+    }
+
+    public int getOriginalLength(int row) {
+        return originalLengths[row];
+    }
+
+    public boolean hasTranslation(int row) {
+        return translationLengths[row] != NO_TEXT;
+    }
+
+    /**
+     * @return translation text, or null when the row has none
+     */
+    public String getTranslation(int row) {
+        if (!hasTranslation(row))
+            return null;
+        return new String(text, translationOffsets[row], translationLengths[row]);
+    }
+
+    public int getTranslationLength(int row) {
+        return hasTranslation(row) ? translationLengths[row] : 0;
+    }
+
+    public void setTranslation(int row, CharSequence translation) {
+        if (translation == null) {
+            translationLengths[row] = NO_TEXT;
+            return;
+        }
+        translationOffsets[row] = appendText(translation);
+        translationLengths[row] = translation.length();
+    }
+
+    /**
+     * Use the original text of another track's row as translation of this row.
+     */
+    public void setTranslation(int row, SubtitleTrack other, int otherRow) {
+        translationOffsets[row] = appendText(other.text, other.originalOffsets[otherRow],
+                other.originalLengths[otherRow]);
+        translationLengths[row] = other.originalLengths[otherRow];
+    }
+
+    /**
+     * Direct access to the text arena, for allocation-free scanning.
+     * Valid until the next mutation of this track.
+     */
+    public char[] textArena() {
+        return text;
+    }
+
+    public int getOriginalOffset(int row) {
+        return originalOffsets[row];
+    }
+
+    public int getTranslationOffset(int row) {
+        return translationOffsets[row];
+    }
+
+    /**
+     * Renumber rows 1..size
+     */
+    public void reindex() {
+        for (int i = 0; i < size; i++) {
+            indexes[i] = i + 1;
+        }
+    }
+
+    /**
+     * Rough heap footprint in bytes, for cache accounting.
+     */
+    public long estimatedBytes() {
+        return (long) indexes.length * (4 + 8 + 8 + 4 + 4 + 4 + 4) + (long) text.length * 2;
+    }
+
+    /**
+     * Convert to the JSON view object. Only meant for the HTTP boundary.
+     */
+    public List<VideoInfoVO.SubtitleItemVO> toItems() {
+        List<VideoInfoVO.SubtitleItemVO> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            VideoInfoVO.SubtitleItemVO item = new VideoInfoVO.SubtitleItemVO(indexes[i], startTimes[i], endTimes[i],
+                    getOriginal(i));
+            item.setTranslation(getTranslation(i));
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * The rows as view objects, each created only when it is reached.
+     */
+    public Iterator<VideoInfoVO.SubtitleItemVO> items() {
+        return new Iterator<>() {
+            private int row;
+
+            @Override
+            public boolean hasNext() {
+                return row < size;
+            }
+
+            @Override
+            public VideoInfoVO.SubtitleItemVO next() {
+                if (row >= size)
+                    throw new NoSuchElementException();
+                VideoInfoVO.SubtitleItemVO item = new VideoInfoVO.SubtitleItemVO(indexes[row], startTimes[row],
+                        endTimes[row], getOriginal(row));
+                item.setTranslation(getTranslation(row));
+                row++;
+                return item;
+            }
+        };
+    }
+
+    private int appendText(CharSequence value) {
+        int offset = textLength;
+        int length = value.length();
+        ensureText(textLength + length);
+        if (value instanceof String) {
+            ((String) value).getChars(0, length, text, offset);
+        } else {
+            for (int i = 0; i < length; i++) {
+                text[offset + i] = value.charAt(i);
+            }
+        }
+        textLength += length;
+        return offset;
+    }
+
+    private int appendText(char[] source, int sourceOffset, int length) {
+        int offset = textLength;
+        ensureText(textLength + length);
+        System.arraycopy(source, sourceOffset, text, offset, length);
+        textLength += length;
+        return offset;
+    }
+
+    private void ensureRows(int required) {
+        if (required <= indexes.length)
+            return;
+        int capacity = Math.max(required, indexes.length * 2);
+        indexes = Arrays.copyOf(indexes, capacity);
+        startTimes = Arrays.copyOf(startTimes, capacity);
+        endTimes = Arrays.copyOf(endTimes, capacity);
+        originalOffsets = Arrays.copyOf(originalOffsets, capacity);
+        originalLengths = Arrays.copyOf(originalLengths, capacity);
+        translationOffsets = Arrays.copyOf(translationOffsets, capacity);
+        translationLengths = Arrays.copyOf(translationLengths, capacity);
+    }
+
+    private void ensureText(int required) {
+        if (required <= text.length)
+            return;
+        text = Arrays.copyOf(text, Math.max(required, text.length * 2));
+    }
+}
@@ -9,6 +9,7 @@ public class VideoInfoVO {
     private String rawVtt;
     private String translationVtt;
     private List<SubtitleItemVO> subtitles;
+    private List<StageTiming> stageTimings;
 
     public String getRawVtt() {
         return rawVtt;
@@ -59,6 +60,14 @@ public class VideoInfoVO {
         this.subtitles = subtitles;
     }
 
+    public List<StageTiming> getStageTimings() {
+        return stageTimings;
+    }
+
+    public void setStageTimings(List<StageTiming> stageTimings) {
+        this.stageTimings = stageTimings;
+    }
+
     public static class SubtitleItemVO {
         private int index;
         private long startTime; // milliseconds
@@ -0,0 +1,54 @@
+package com.example.demo.model.subtitle;
+
+/**
+ * The few yt-dlp metadata fields the app uses, trimmed from the full
+ * --dump-json output so they can be cached.
+ */
+public class VideoMeta {
+    private String videoId;
+    private String title;
+    private long duration; // seconds
+    private long fetchedAt; // epoch millis
+
+    public VideoMeta() {
+    }
+
+    public VideoMeta(String videoId, String title, long duration, long fetchedAt) {
+        this.videoId = videoId;
+        this.title = title;
+        this.duration = duration;
+        this.fetchedAt = fetchedAt;
+    }
+
+    public String getVideoId() {
+        return videoId;
+    }
+
+    public void setVideoId(String videoId) {
+        this.videoId = videoId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    public void setFetchedAt(long fetchedAt) {
+        this.fetchedAt = fetchedAt;
+    }
+}
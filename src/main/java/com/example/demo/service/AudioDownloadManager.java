@@ -0,0 +1,438 @@
+package com.example.demo.service;
+
+import com.example.demo.utils.ProcessRunner;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Downloads audio in the background and exposes the file while it grows.
+ *
+ * yt-dlp streams the best audio format to stdout. With
+ * erupt.subtitle.audio-format=native (the default) the stream is stored
+ * as-is, named after its container (e.g. {videoId}.webm); with mp3, ffmpeg
+ * re-encodes it on the fly as before. Clients that cannot play the native
+ * format ask for mp3, which is transcoded from the stored file once and
+ * kept next to it.
+ *
+ * Bytes are appended to a .part file, renamed into place once complete.
+ * Readers follow the written length through the {@link Download} and wait
+ * on it for bytes that are not there yet. One download per video and
+ * format runs at a time; the processes go through YtDlpScheduler at AUDIO
+ * priority. A finished download queues its waveform peaks
+ * (AudioPeaksService).
+ */
+@Service
+public class AudioDownloadManager {
+
+    private static final Logger logger = Logger.getLogger(AudioDownloadManager.class.getName());
+
+    /**
+     * A running (or just finished) download. Its monitor is the notifier
+     * readers wait on for more bytes.
+     */
+    public static final class Download {
+        private final String videoId;
+        private final File partFile;
+        private File target;
+        private long written;
+        private boolean finished;
+        private String error;
+
+        Download(String videoId, File partFile, File target) {
+            this.videoId = videoId;
+            this.partFile = partFile;
+            this.target = target;
+        }
+
+        public String getVideoId() {
+            return videoId;
+        }
+
+        /**
+         * The file being written; gone once the download finished.
+         */
+        public File getPartFile() {
+            return partFile;
+        }
+
+        /**
+         * Where the complete file will be. For a native download only known
+         * once the first bytes arrived.
+         */
+        public synchronized File getTarget() {
+            return target;
+        }
+
+        /**
+         * The complete file, null while downloading or after a failure.
+         */
+        public synchronized File getFile() {
+            return finished && error == null ? target : null;
+        }
+
+        public synchronized boolean isFinished() {
+            return finished;
+        }
+
+        public synchronized String getError() {
+            return error;
+        }
+
+        public synchronized long getWritten() {
+            return written;
+        }
+
+        /**
+         * Wait (at most timeoutMs) until more than position bytes are
+         * written or the download ended.
+         *
+         * @return the bytes written so far
+         */
+        public synchronized long awaitWritten(long position, long timeoutMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            long left;
+            while (written <= position && !finished && (left = deadline - System.currentTimeMillis()) > 0) {
+                wait(left);
+            }
+            return written;
+        }
+
+        /**
+         * Wait (at most timeoutMs) for the download to end.
+         *
+         * @return the complete file, or null on failure or timeout
+         */
+        public synchronized File awaitFile(long timeoutMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            long left;
+            while (!finished && (left = deadline - System.currentTimeMillis()) > 0) {
+                wait(left);
+            }
+            return getFile();
+        }
+
+        synchronized void setTarget(File target) {
+            this.target = target;
+        }
+
+        synchronized void appended(long bytes) {
+            written += bytes;
+            notifyAll();
+        }
+
+        synchronized void finish(String error) {
+            this.finished = true;
+            this.error = error;
+            notifyAll();
+        }
+    }
+
+    public enum Format {
+        NATIVE, MP3
+    }
+
+    private interface Job {
+        /**
+         * @return the exit code of the process that wrote the part file
+         */
+        int run(Download download) throws Exception;
+    }
+
+    private static final String TRANSCODE_FORMAT = "mp3";
+
+    @Autowired
+    private YtDlpScheduler ytDlpScheduler;
+
+    @Autowired
+    private SubtitleStorage storage;
+
+    @Autowired
+    private SubtitleDirectoryIndex directoryIndex;
+
+    @Autowired
+    private SubtitleFileService subtitleFileService;
+
+    @Autowired
+    private SubtitleStorageQuota storageQuota;
+
+    @Autowired
+    private AudioPeaksService audioPeaksService;
+
+    @Value("${erupt.subtitle.audio-format:NATIVE}")
+    private Format format = Format.NATIVE;
+
+    @Value("${erupt.subtitle.ffmpeg-path:ffmpeg}")
+    private String ffmpegPath = "ffmpeg";
+
+    // videoId, or videoId.format for a transcode
+    private final ConcurrentHashMap<String, Download> downloads = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "audio-download-" + threadNumber.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong transcodes = new AtomicLong();
+
+    /**
+     * The download of a video's audio, started unless already running. If
+     * the file is already complete, the returned download is finished.
+     */
+    public Download download(String videoId) {
+        return track(videoId, videoId, () -> subtitleFileService.getAudioFile(videoId), () -> {
+            if (format == Format.MP3) {
+                File target = storage.fileFor(videoId, videoId + ".mp3");
+                return new Download(videoId, new File(target.getPath() + ".part"), target);
+            }
+            // Named once the container is known
+            return new Download(videoId, storage.fileFor(videoId, videoId + ".audio.part"), null);
+        }, this::fetch);
+    }
+
+    /**
+     * The audio in a given format: the download itself if it has that
+     * format, otherwise a transcode of the downloaded file (mp3 only).
+     *
+     * @throws IllegalArgumentException for a format that cannot be made
+     */
+    public Download download(String videoId, String wanted) {
+        if (wanted == null)
+            return download(videoId);
+        Download source = download(videoId);
+        File sourceTarget = source.getTarget();
+        if (sourceTarget != null && sourceTarget.getName().endsWith("." + wanted))
+            return source;
+        if (!TRANSCODE_FORMAT.equals(wanted))
+            throw new IllegalArgumentException("Audio cannot be transcoded to " + wanted);
+        return track(videoId, videoId + "." + wanted, () -> subtitleFileService.getAudioFile(videoId, wanted), () -> {
+            File target = storage.fileFor(videoId, videoId + "." + wanted);
+            return new Download(videoId, new File(target.getPath() + ".part"), target);
+        }, download -> transcode(source, download));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("audioFormat", format);
+        stats.put("audioDownloading", downloads.size());
+        stats.put("audioStarted", started.get());
+        stats.put("audioCompleted", completed.get());
+        stats.put("audioFailed", failed.get());
+        stats.put("audioTranscodes", transcodes.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // The running download for the key, a finished one for an existing file, or a new one
+    private Download track(String videoId, String key, Supplier<File> existing, Supplier<Download> create,
+            Job job) {
+        Download download = downloads.computeIfAbsent(key, k -> {
+            File file = existing.get();
+            if (file != null && file.length() > 0) {
+                // Completed since the caller looked
+                Download done = new Download(videoId, null, file);
+                done.finish(null);
+                return done;
+            }
+            Download fresh = create.get();
+            workers.execute(() -> run(key, fresh, job));
+            return fresh;
+        });
+        if (download.isFinished())
+            downloads.remove(key, download);
+        return download;
+    }
+
+    private void run(String key, Download download, Job job) {
+        started.incrementAndGet();
+        logger.info("Starting Audio Download for: " + key);
+        String error = null;
+        try {
+            int exitCode = job.run(download);
+            if (exitCode == 0 && download.getTarget() != null) {
+                move(download.getPartFile(), download.getTarget());
+                directoryIndex.added(download.getTarget());
+                logger.info("Audio Downloaded Successfully: " + download.getTarget().getAbsolutePath());
+                // Peaks of the source only, a transcode sounds the same
+                if (key.equals(download.getVideoId()))
+                    audioPeaksService.schedule(download.getVideoId());
+            } else {
+                error = exitCode != 0 ? "exit code " + exitCode : "no audio received";
+            }
+        } catch (Exception e) {
+            error = e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+        if (error != null) {
+            failed.incrementAndGet();
+            logger.severe("Audio Download Failed for " + key + ": " + error);
+            download.getPartFile().delete();
+        } else {
+            completed.incrementAndGet();
+        }
+        download.finish(error);
+        downloads.remove(key, download);
+    }
+
+    // yt-dlp --cookies ... -f bestaudio/best -o - URL [| ffmpeg ... -f mp3 pipe:1]
+    private int fetch(Download download) throws Exception {
+        ProcessBuilder pb = new ProcessBuilder(
+                "yt-dlp",
+                "--cookies", "C:\\666_sdk\\cookies.txt", // Hardcoded from user prompt
+                "--js-runtimes", "node",
+                "-f", "bestaudio/best",
+                "-o", "-",
+                "https://www.youtube.com/watch?v=" + download.getVideoId());
+        long runMs = ytDlpScheduler.getRunMs(YtDlpScheduler.Priority.AUDIO);
+        if (format == Format.MP3) {
+            return ytDlpScheduler.run(YtDlpScheduler.Priority.AUDIO, pb, process -> encode(process, download));
+        }
+        return ytDlpScheduler.run(YtDlpScheduler.Priority.AUDIO, pb, process -> ProcessRunner.runStreaming(process,
+                stream -> append(stream, download, true), line -> logger.fine("[yt-dlp] " + line), runMs));
+    }
+
+    // ffmpeg -i <downloaded file> ... -f mp3 pipe:1, once the download is complete
+    private int transcode(Download source, Download download) throws Exception {
+        long runMs = ytDlpScheduler.getRunMs(YtDlpScheduler.Priority.AUDIO);
+        File sourceFile = source.awaitFile(runMs);
+        if (sourceFile == null)
+            throw new IOException("Audio download failed: " + source.getError());
+        transcodes.incrementAndGet();
+        ProcessBuilder pb = new ProcessBuilder(ffmpegPath, "-hide_banner", "-loglevel", "error",
+                "-i", sourceFile.getAbsolutePath(), "-vn", "-c:a", "libmp3lame", "-q:a", "0", "-f", "mp3", "pipe:1");
+        // The source must not be evicted while ffmpeg reads it
+        try (SubtitleStorageQuota.Pin pin = storageQuota.pin(download.getVideoId())) {
+            return ytDlpScheduler.run(YtDlpScheduler.Priority.AUDIO, pb, process -> ProcessRunner.runStreaming(process,
+                    stream -> append(stream, download, false), line -> logger.fine("[ffmpeg] " + line), runMs));
+        }
+    }
+
+    /**
+     * Pipe yt-dlp's output through ffmpeg into the part file.
+     *
+     * @return the first non-zero exit code, or 0
+     */
+    private int encode(Process ytDlp, Download download) throws Exception {
+        long runMs = ytDlpScheduler.getRunMs(YtDlpScheduler.Priority.AUDIO);
+        Process ffmpeg = new ProcessBuilder(ffmpegPath, "-hide_banner", "-loglevel", "error",
+                "-i", "pipe:0", "-vn", "-c:a", "libmp3lame", "-q:a", "0", "-f", "mp3", "pipe:1").start();
+        try {
+            Future<Integer> encoder = workers.submit(() -> ProcessRunner.runStreaming(ffmpeg,
+                    stream -> append(stream, download, false), line -> logger.fine("[ffmpeg] " + line), runMs));
+            int exitCode = ProcessRunner.runStreaming(ytDlp, stream -> {
+                // Flushed per chunk, the encoder should see bytes as they arrive
+                try (OutputStream out = ffmpeg.getOutputStream()) {
+                    byte[] buf = new byte[64 * 1024];
+                    int n;
+                    while ((n = stream.read(buf)) > 0) {
+                        out.write(buf, 0, n);
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    // ffmpeg gave up, do not leave yt-dlp blocked on a full pipe
+                    ytDlp.destroy();
+                    throw e;
+                }
+            }, line -> logger.fine("[yt-dlp] " + line), runMs);
+            if (exitCode != 0)
+                return exitCode;
+            return encoder.get(runMs, TimeUnit.MILLISECONDS);
+        } finally {
+            if (ffmpeg.isAlive())
+                ffmpeg.destroyForcibly();
+        }
+    }
+
+    /**
+     * Write the stream to the part file.
+     *
+     * @param sniff name the target after the container found in the first
+     *              bytes
+     */
+    private void append(InputStream in, Download download, boolean sniff) throws IOException {
+        try (FileChannel channel = FileChannel.open(download.getPartFile().toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            if (sniff) {
+                n = in.readNBytes(buf, 0, 16);
+                if (n == 0)
+                    return;
+                String ext = container(buf, n);
+                if (ext == null)
+                    throw new IOException("Unknown audio container");
+                download.setTarget(storage.fileFor(download.getVideoId(), download.getVideoId() + "." + ext));
+                write(channel, buf, n, download);
+            }
+            while ((n = in.read(buf)) > 0) {
+                write(channel, buf, n, download);
+            }
+        }
+    }
+
+    private static void write(FileChannel channel, byte[] buf, int n, Download download) throws IOException {
+        ByteBuffer chunk = ByteBuffer.wrap(buf, 0, n);
+        while (chunk.hasRemaining()) {
+            channel.write(chunk);
+        }
+        download.appended(n);
+    }
+
+    /**
+     * File extension for the container starting with these bytes, null if
+     * unknown.
+     */
+    static String container(byte[] head, int n) {
+        if (n >= 8 && head[4] == 'f' && head[5] == 't' && head[6] == 'y' && head[7] == 'p')
+            return "m4a";
+        if (n >= 4 && (head[0] & 0xFF) == 0x1A && (head[1] & 0xFF) == 0x45 && (head[2] & 0xFF) == 0xDF
+                && (head[3] & 0xFF) == 0xA3)
+            return "webm";
+        if (n >= 4 && head[0] == 'O' && head[1] == 'g' && head[2] == 'g' && head[3] == 'S')
+            return "ogg";
+        if (n >= 3 && head[0] == 'I' && head[1] == 'D' && head[2] == '3'
+                || n >= 2 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xE0) == 0xE0)
+            return "mp3";
+        return null;
+    }
+
+    private static void move(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.demo.service;
+
+import com.example.demo.model.subtitle.AudioPeaksVO;
+import com.example.demo.utils.AudioPeaksFile;
+import com.example.demo.utils.ProcessRunner;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Waveform peaks of the stored audio, so players can draw it without
+ * downloading and decoding the whole file.
+ *
+ * Once an audio download completes, ffmpeg decodes it to 8 kHz mono PCM a
+ * single time and the peaks are stored next to it as {videoId}.peaks.bin
+ * (see {@link AudioPeaksFile}), erupt.subtitle.peaks-per-second at the
+ * finest level. Decodes run one at a time in the background, through
+ * YtDlpScheduler at AUDIO priority. Audio stored before this existed gets
+ * its peaks on the first request for them.
+ */
+@Service
+public class AudioPeaksService {
+
+    private static final Logger logger = Logger.getLogger(AudioPeaksService.class.getName());
+
+    private static final int SAMPLE_RATE = 8000;
+    // Per response, the player asks for a coarser zoom or a shorter range beyond that
+    private static final int MAX_SLICE_PEAKS = 16384;
+
+    @Autowired
+    private SubtitleFileService subtitleFileService;
+
+    @Autowired
+    private SubtitleStorage storage;
+
+    @Autowired
+    private YtDlpScheduler ytDlpScheduler;
+
+    @Autowired
+    private SubtitleStorageQuota storageQuota;
+
+    @Value("${erupt.subtitle.ffmpeg-path:ffmpeg}")
+    private String ffmpegPath = "ffmpeg";
+
+    @Value("${erupt.subtitle.peaks-per-second:100}")
+    private int peaksPerSecond = 100;
+
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "audio-peaks");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public File getPeaksFile(String videoId) {
+        return subtitleFileService.resolve(videoId, videoId + ".peaks.bin");
+    }
+
+    /**
+     * Compute the peaks of the video's audio in the background, unless
+     * they are up to date or already queued.
+     *
+     * @return false if there is no audio to compute them from
+     */
+    public boolean schedule(String videoId) {
+        if (subtitleFileService.getAudioFile(videoId) == null)
+            return false;
+        if (queued.add(videoId)) {
+            try {
+                worker.execute(() -> {
+                    try {
+                        generate(videoId);
+                    } finally {
+                        queued.remove(videoId);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                queued.remove(videoId);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Peaks between from and to (ms) at a zoom level, or at the finest level
+     * with at most perSecond peaks per second. Neither given: the coarsest
+     * level, an overview of the whole track.
+     *
+     * @return null until the peaks were computed
+     */
+    public AudioPeaksVO slice(String videoId, Integer zoom, Double perSecond, long from, Long to) {
+        AudioPeaksFile.Header peaksFile = readHeader(videoId);
+        if (peaksFile == null)
+            return null;
+        // Recompute from a different (e.g. re-downloaded) file, serve the old ones meanwhile
+        File audio = subtitleFileService.getAudioFile(videoId);
+        if (audio != null && !key(audio).equals(peaksFile.getKey()))
+            schedule(videoId);
+
+        int level;
+        if (zoom != null)
+            level = Math.max(0, Math.min(peaksFile.getLevelCount() - 1, zoom));
+        else if (perSecond != null)
+            level = peaksFile.levelFor(perSecond);
+        else
+            level = peaksFile.getLevelCount() - 1;
+        int first = peaksFile.peakAt(level, from);
+        int last = to != null ? peaksFile.peakAt(level, to + 1) : peaksFile.getPeakCount(level);
+        last = Math.min(last, first + MAX_SLICE_PEAKS);
+        byte[] bytes;
+        try {
+            bytes = peaksFile.slice(level, first, last);
+        } catch (IOException e) {
+            // e.g. evicted meanwhile
+            logger.warning("Reading peaks of " + videoId + " failed: " + e.getMessage());
+            return null;
+        }
+        int[] peaks = new int[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            peaks[i] = bytes[i];
+        }
+
+        AudioPeaksVO vo = new AudioPeaksVO();
+        vo.setVideoId(videoId);
+        vo.setSampleRate(peaksFile.getSampleRate());
+        vo.setSamplesPerPeak(peaksFile.getSamplesPerPeak(level));
+        vo.setZoom(level);
+        vo.setZoomLevels(peaksFile.getLevelCount());
+        vo.setTotalPeaks(peaksFile.getPeakCount(level));
+        vo.setStart(first);
+        vo.setStartTime((long) first * peaksFile.getSamplesPerPeak(level) * 1000 / peaksFile.getSampleRate());
+        vo.setPeaks(peaks);
+        return vo;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("peaksQueued", queued.size());
+        stats.put("peaksGenerated", generated.get());
+        stats.put("peaksFailed", failed.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    // ffmpeg -i <audio> -ac 1 -ar 8000 -f s16le pipe:1
+    private void generate(String videoId) {
+        File audio = subtitleFileService.getAudioFile(videoId);
+        if (audio == null)
+            return;
+        String key = key(audio);
+        AudioPeaksFile.Header existing = readHeader(videoId);
+        if (existing != null && key.equals(existing.getKey()))
+            return;
+
+        long begin = System.currentTimeMillis();
+        long runMs = ytDlpScheduler.getRunMs(YtDlpScheduler.Priority.AUDIO);
+        AudioPeaksFile.Builder builder = new AudioPeaksFile.Builder(SAMPLE_RATE,
+                Math.max(1, SAMPLE_RATE / Math.max(1, peaksPerSecond)));
+        ProcessBuilder pb = new ProcessBuilder(ffmpegPath, "-hide_banner", "-loglevel", "error",
+                "-i", audio.getAbsolutePath(), "-vn", "-ac", "1", "-ar", String.valueOf(SAMPLE_RATE),
+                "-f", "s16le", "pipe:1");
+        // The audio must not be evicted while ffmpeg reads it
+        try (SubtitleStorageQuota.Pin pin = storageQuota.pin(videoId)) {
+            int exitCode = ytDlpScheduler.run(YtDlpScheduler.Priority.AUDIO, pb,
+                    process -> ProcessRunner.runStreaming(process, stream -> {
+                        byte[] buf = new byte[64 * 1024];
+                        int n;
+                        while ((n = stream.read(buf)) > 0) {
+                            builder.accept(buf, n);
+                        }
+                    }, line -> logger.fine("[ffmpeg] " + line), runMs));
+            if (exitCode != 0)
+                throw new IOException("ffmpeg exit code " + exitCode);
+            save(videoId, key, builder);
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            logger.warning("Computing peaks of " + audio.getName() + " failed: " + e.getMessage());
+            return;
+        }
+        generated.incrementAndGet();
+        logger.info("Computed " + builder.getPeakCount() + " peaks of " + audio.getName() + " in "
+                + (System.currentTimeMillis() - begin) + " ms");
+    }
+
+    private void save(String videoId, String key, AudioPeaksFile.Builder builder) throws IOException {
+        File peaksFile = storage.fileFor(videoId, videoId + ".peaks.bin");
+        // Readers may be reading the old file: the new one is swapped in
+        ReentrantLock lock = subtitleFileService.writeLock(videoId);
+        lock.lock();
+        try {
+            subtitleFileService.writeFile(peaksFile, channel -> builder.write(key, channel));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private AudioPeaksFile.Header readHeader(String videoId) {
+        File peaksFile = getPeaksFile(videoId);
+        if (!peaksFile.exists())
+            return null;
+        try {
+            return AudioPeaksFile.readHeader(peaksFile.toPath());
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Ignoring unreadable peaks file " + peaksFile.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Which audio file the peaks were computed from
+    private static String key(File audio) {
+        return audio.getName() + ":" + audio.length();
+    }
+}
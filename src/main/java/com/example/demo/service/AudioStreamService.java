@@ -0,0 +1,429 @@
+package com.example.demo.service;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves audio files over HTTP the way a static file server would:
+ * <ul>
+ * <li>200 with the whole file without a Range header, 206 for one range
+ * and multipart/byteranges for several, 416 if none is satisfiable.
+ * If-Range falls back to the whole file once the file changed.</li>
+ * <li>ETag / Last-Modified with If-None-Match / If-Modified-Since (304) and
+ * If-Match / If-Unmodified-Since (412), plus a long Cache-Control, so
+ * players revalidate instead of re-fetching.</li>
+ * <li>One contiguous part is handed to Tomcat's sendfile when the connector
+ * supports it, so the kernel sends it without a copy through the JVM.
+ * Everything else (multipart, growing files, no sendfile) is copied with
+ * FileChannel.transferTo into the servlet stream, which is not a file or
+ * socket channel: the JDK copies it through a buffer, 8 KB at a time.</li>
+ * </ul>
+ * A file still being downloaded is served progressively, see
+ * {@link #serveGrowing}.
+ */
+@Service
+public class AudioStreamService {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final Pattern SINGLE_RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    // Parts closer than this are sent as one, a part header costs about as much
+    private static final long COALESCE_GAP = 128;
+
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "mp3", "audio/mpeg",
+            "m4a", "audio/mp4",
+            "mp4", "audio/mp4",
+            "aac", "audio/aac",
+            "webm", "audio/webm",
+            "opus", "audio/ogg",
+            "ogg", "audio/ogg",
+            "wav", "audio/wav",
+            "flac", "audio/flac");
+
+    @Value("${erupt.subtitle.audio-cache-days:30}")
+    private long cacheDays = 30;
+
+    @Value("${erupt.subtitle.audio-sendfile:true}")
+    private boolean sendfile = true;
+
+    // How long a reader waits for bytes the download has not written yet
+    @Value("${erupt.subtitle.audio-wait-ms:30000}")
+    private long waitMs = 30000;
+
+    private final AtomicLong sendfileResponses = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong progressive = new AtomicLong();
+
+    /**
+     * Answer a GET or HEAD for the file.
+     */
+    public void serve(File file, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = file.length();
+        // HTTP dates have second precision
+        long lastModified = file.lastModified() / 1000 * 1000;
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + cacheDays * 86400);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (preconditionFailed(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
+            return;
+        }
+        if (notModified(request, etag, lastModified)) {
+            notModified.incrementAndGet();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String contentType = contentType(file);
+        boolean head = "HEAD".equalsIgnoreCase(request.getMethod());
+        List<long[]> ranges = ranges(request, etag, lastModified, length);
+
+        if (ranges == null) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            if (!head)
+                send(file, 0, length, request, response);
+        } else if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+        } else if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, length));
+            response.setContentLengthLong(range[1] - range[0] + 1);
+            if (!head)
+                send(file, range[0], range[1] - range[0] + 1, request, response);
+        } else {
+            sendMultipart(file, ranges, length, contentType, head, response);
+        }
+    }
+
+    /**
+     * Answer a GET or HEAD while the file is still being downloaded:
+     * <ul>
+     * <li>No Range (or bytes=0-): 200 without a length, following the file
+     * until the download is done, so playback starts with the first
+     * bytes.</li>
+     * <li>bytes=first-[last]: 206 right away with whatever part of the range
+     * is already written (bytes first-end/*), after waiting for the first
+     * byte if needed.</li>
+     * <li>Suffix and multiple ranges need the final length: they wait for
+     * the download and are then served from the complete file.</li>
+     * </ul>
+     */
+    public void serveGrowing(AudioDownloadManager.Download download, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        try {
+            doServeGrowing(download, request, response);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for audio of " + download.getVideoId());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("audioSendfile", sendfileResponses.get());
+        stats.put("audioNotModified", notModified.get());
+        stats.put("audioProgressive", progressive.get());
+        return stats;
+    }
+
+    private void doServeGrowing(AudioDownloadManager.Download download, HttpServletRequest request,
+            HttpServletResponse response) throws IOException, InterruptedException {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        Matcher range = header != null ? SINGLE_RANGE.matcher(header.trim()) : null;
+        if (range != null && !range.matches()) {
+            File file = download.awaitFile(waitMs);
+            if (file != null) {
+                serve(file, request, response);
+            } else {
+                unavailable(download, response);
+            }
+            return;
+        }
+        long first = range != null ? Long.parseLong(range.group(1)) : 0;
+        long last = range != null && !range.group(2).isEmpty() ? Long.parseLong(range.group(2)) : -1;
+        if (last >= 0 && last < first) {
+            // Invalid, a Range header may be ignored
+            first = 0;
+            last = -1;
+        }
+
+        long written = download.awaitWritten(first, waitMs);
+        File complete = download.getFile();
+        if (complete != null) {
+            serve(complete, request, response);
+            return;
+        }
+        if (written <= first) {
+            unavailable(download, response);
+            return;
+        }
+
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(download.getPartFile().toPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            // Renamed into place (or removed) just before the download ends
+            complete = download.awaitFile(waitMs);
+            if (complete != null) {
+                serve(complete, request, response);
+            } else {
+                unavailable(download, response);
+            }
+            return;
+        }
+        progressive.incrementAndGet();
+        try (channel) {
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            response.setContentType(contentType(download.getTarget()));
+            boolean head = "HEAD".equalsIgnoreCase(request.getMethod());
+            if (first == 0 && last < 0) {
+                response.setStatus(HttpServletResponse.SC_OK);
+                if (!head)
+                    follow(download, channel, response);
+                return;
+            }
+            long end = last >= 0 ? Math.min(last, written - 1) : written - 1;
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + first + "-" + end + "/*");
+            response.setContentLengthLong(end - first + 1);
+            if (!head)
+                transfer(channel, first, end - first + 1, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    // Send the file from the start, waiting for each new chunk, until the download ended
+    private void follow(AudioDownloadManager.Download download, FileChannel channel, HttpServletResponse response)
+            throws IOException, InterruptedException {
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        long position = 0;
+        while (true) {
+            long written = download.awaitWritten(position, waitMs);
+            if (written > position) {
+                transfer(channel, position, written - position, out);
+                position = written;
+                response.flushBuffer();
+            } else if (!download.isFinished()) {
+                throw new IOException("Audio download of " + download.getVideoId() + " stalled");
+            } else if (download.getError() != null) {
+                // Abort instead of ending the chunked body as if it were complete
+                throw new IOException("Audio download of " + download.getVideoId() + " failed: "
+                        + download.getError());
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void unavailable(AudioDownloadManager.Download download, HttpServletResponse response)
+            throws IOException {
+        if (download.isFinished()) {
+            // Failed, a complete file is served by serve()
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        } else {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * MIME type by extension; yt-dlp's audio formats are not all known to
+     * the platform's type map.
+     */
+    public static String contentType(File file) throws IOException {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String type = dot >= 0 ? CONTENT_TYPES.get(name.substring(dot + 1).toLowerCase(Locale.ROOT)) : null;
+        if (type == null)
+            type = Files.probeContentType(file.toPath());
+        return type != null ? type : "application/octet-stream";
+    }
+
+    private static boolean preconditionFailed(HttpServletRequest request, String etag, long lastModified) {
+        String ifMatch = request.getHeader(HttpHeaders.IF_MATCH);
+        if (ifMatch != null)
+            return !matches(ifMatch, etag, false);
+        long ifUnmodifiedSince = dateHeader(request, HttpHeaders.IF_UNMODIFIED_SINCE);
+        return ifUnmodifiedSince >= 0 && lastModified > ifUnmodifiedSince;
+    }
+
+    // If-None-Match wins over If-Modified-Since when both are sent
+    private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null)
+            return matches(ifNoneMatch, etag, true);
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    private static boolean matches(String header, String etag, boolean weak) {
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*"))
+                return true;
+            if (weak && tag.startsWith("W/"))
+                tag = tag.substring(2);
+            if (tag.equals(etag))
+                return true;
+        }
+        return false;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The satisfiable ranges as inclusive [start, end], sorted and
+     * coalesced; null to send the whole file (no or unusable Range header,
+     * or If-Range no longer matching), empty if none is satisfiable.
+     */
+    private static List<long[]> ranges(HttpServletRequest request, String etag, long lastModified, long length) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null)
+            return null;
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null) {
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                if (!ifRange.equals(etag))
+                    return null;
+            } else if (dateHeader(request, HttpHeaders.IF_RANGE) != lastModified) {
+                return null;
+            }
+        }
+        List<HttpRange> parsed;
+        try {
+            parsed = HttpRange.parseRanges(header);
+        } catch (IllegalArgumentException e) {
+            // Malformed or too many ranges: a Range header may be ignored
+            return null;
+        }
+        List<long[]> ranges = new ArrayList<>();
+        for (HttpRange range : parsed) {
+            try {
+                ranges.add(new long[]{range.getRangeStart(length), range.getRangeEnd(length)});
+            } catch (IllegalArgumentException e) {
+                // Starts past the end, skip it
+            }
+        }
+        ranges.sort(Comparator.comparingLong(r -> r[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] range : ranges) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range[0] <= last[1] + COALESCE_GAP) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    private static String contentRange(long[] range, long length) {
+        return "bytes " + range[0] + "-" + range[1] + "/" + length;
+    }
+
+    private void send(File file, long position, long count, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        if (sendfile && count > 0 && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat writes the file from the socket poller after the handler returned
+            request.setAttribute(SENDFILE_FILENAME, file.getAbsolutePath());
+            request.setAttribute(SENDFILE_START, position);
+            request.setAttribute(SENDFILE_END, position + count);
+            sendfileResponses.incrementAndGet();
+            return;
+        }
+        // Buffered copy, see the class comment
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            transfer(channel, position, count, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    private static void sendMultipart(File file, List<long[]> ranges, long length, String contentType, boolean head,
+            HttpServletResponse response) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long total = 0;
+        for (long[] range : ranges) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            total += partHeader.length + range[1] - range[0] + 1;
+        }
+        byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        total += end.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(total);
+        if (head)
+            return;
+        ServletOutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] range = ranges.get(i);
+                out.write(partHeaders.get(i));
+                transfer(channel, range[0], range[1] - range[0] + 1, target);
+            }
+        }
+        out.write(end);
+    }
+
+    private static void transfer(FileChannel channel, long position, long count, WritableByteChannel target)
+            throws IOException {
+        while (count > 0) {
+            long n = channel.transferTo(position, count, target);
+            if (n <= 0)
+                throw new IOException("File ended before " + count + " more bytes could be sent");
+            position += n;
+            count -= n;
+        }
+    }
+}
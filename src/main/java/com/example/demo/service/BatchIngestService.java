@@ -0,0 +1,238 @@
+package com.example.demo.service;
+
+import com.example.demo.model.subtitle.BatchIngest;
+import com.example.demo.model.subtitle.ProcessedVideo;
+import com.example.demo.model.subtitle.SubtitleJob;
+import com.example.demo.model.subtitle.VideoMeta;
+import com.example.demo.service.pipeline.PipelineOptions;
+import com.example.demo.utils.YouTubeUrls;
+import com.example.demo.utils.YtDlpExtraUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Ingests every video of a playlist or channel.
+ *
+ * The URL is expanded with one flat-playlist yt-dlp run, whose titles and
+ * durations seed the metadata cache; a channel root lists its tabs, which
+ * are expanded with one more run each. A URL without videos fails the batch. The videos are then processed on a
+ * bounded worker pool, sized like the yt-dlp scheduler by default, so
+ * throughput follows erupt.ytdlp.max-concurrent. A failing video is
+ * recorded in the report and does not affect the others.
+ */
+@Service
+public class BatchIngestService {
+
+    private static final Logger logger = Logger.getLogger(BatchIngestService.class.getName());
+
+    @Autowired
+    private SubtitleService subtitleService;
+
+    @Autowired
+    private VideoMetaCache videoMetaCache;
+
+    @Autowired
+    private YtDlpExtraUtils ytDlpUtils;
+
+    @Value("${erupt.subtitle.job-ttl-minutes:30}")
+    private long jobTtlMinutes = 30;
+
+    @Value("${erupt.subtitle.batch-max-videos:500}")
+    private int maxVideos = 500;
+
+    private final Map<String, BatchIngest> batches = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor workers;
+
+    public BatchIngestService(@Value("${erupt.subtitle.batch-workers:${erupt.ytdlp.max-concurrent:3}}") int workerCount,
+            @Value("${erupt.subtitle.batch-queue:2000}") int queueSize) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Thread(r, "subtitle-batch-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * @param limit at most this many videos (capped by erupt.subtitle.batch-max-videos)
+     * @throws RejectedExecutionException when the queue is full
+     */
+    public BatchIngest submit(String url, PipelineOptions options, boolean refresh, int limit) {
+        BatchIngest batch = new BatchIngest(UUID.randomUUID().toString(), url);
+        int max = limit > 0 ? Math.min(limit, maxVideos) : maxVideos;
+        batches.put(batch.getId(), batch);
+        try {
+            workers.execute(() -> expand(batch, options, refresh, max));
+        } catch (RuntimeException e) {
+            batches.remove(batch.getId());
+            throw e;
+        }
+        logger.info("Queued batch " + batch.getId() + " for " + url);
+        return batch;
+    }
+
+    public BatchIngest getBatch(String id) {
+        return batches.get(id);
+    }
+
+    private void expand(BatchIngest batch, PipelineOptions options, boolean refresh, int max) {
+        List<BatchIngest.Item> items = new ArrayList<>();
+        try {
+            JsonNode playlist = ytDlpUtils.listPlaylist(batch.getUrl(), max);
+            batch.setTitle(playlist.path("title").asText(null));
+            Set<String> seen = new LinkedHashSet<>();
+            List<String> tabs = new ArrayList<>();
+            collect(playlist, items, seen, tabs, max);
+            // A channel root lists its tabs (Videos, Shorts, Live) instead of videos, expand those
+            for (String tab : tabs) {
+                if (items.size() >= max)
+                    break;
+                try {
+                    collect(ytDlpUtils.listPlaylist(tab, max - items.size()), items, seen, null, max);
+                } catch (Exception e) {
+                    logger.warning("Batch " + batch.getId() + ": tab " + tab + " could not be expanded: "
+                            + e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            fail(batch, e.getMessage());
+            logger.warning("Batch " + batch.getId() + " could not be expanded: " + e.getMessage());
+            return;
+        }
+        if (items.isEmpty()) {
+            fail(batch, "No videos found at " + batch.getUrl());
+            logger.warning("Batch " + batch.getId() + " found no videos");
+            return;
+        }
+
+        batch.setItems(items);
+        batch.setStatus(BatchIngest.Status.RUNNING);
+        logger.info("Batch " + batch.getId() + " expanded to " + items.size() + " videos");
+        for (BatchIngest.Item item : items) {
+            try {
+                workers.execute(() -> ingest(batch, item, options, refresh));
+            } catch (RejectedExecutionException e) {
+                item.setStatus(SubtitleJob.Status.FAILED);
+                item.setError("queue full");
+                if (batch.itemFinished(false))
+                    finish(batch);
+            }
+        }
+    }
+
+    /**
+     * Add the videos of a flat playlist to items, descending into nested
+     * playlists. Entries that are neither (e.g. channel tabs) go to tabs,
+     * when given.
+     */
+    private void collect(JsonNode playlist, List<BatchIngest.Item> items, Set<String> seen, List<String> tabs,
+            int max) {
+        JsonNode entries = playlist.get("entries");
+        List<JsonNode> nodes = new ArrayList<>();
+        if (entries != null && entries.isArray()) {
+            entries.forEach(nodes::add);
+        } else {
+            nodes.add(playlist); // a single video URL
+        }
+
+        long now = System.currentTimeMillis();
+        for (JsonNode entry : nodes) {
+            if (items.size() >= max)
+                return;
+            if (entry.has("entries")) {
+                collect(entry, items, seen, tabs, max);
+                continue;
+            }
+            String videoId = YouTubeUrls.extractVideoId(entry.path("id").asText(""));
+            if (videoId == null) {
+                String url = entry.path("url").asText(null);
+                if (tabs != null && url != null)
+                    tabs.add(url);
+                continue;
+            }
+            if (!seen.add(videoId))
+                continue;
+            String title = entry.path("title").asText(null);
+            if (title != null) {
+                videoMetaCache.put(YouTubeUrls.watchUrl(videoId),
+                        new VideoMeta(videoId, title, entry.path("duration").asLong(0), now));
+            }
+            items.add(new BatchIngest.Item(videoId, title));
+        }
+    }
+
+    private void ingest(BatchIngest batch, BatchIngest.Item item, PipelineOptions options, boolean refresh) {
+        item.setStatus(SubtitleJob.Status.RUNNING);
+        long begin = System.currentTimeMillis();
+        boolean ok = false;
+        try {
+            ProcessedVideo result = subtitleService.processVideo(YouTubeUrls.watchUrl(item.getVideoId()), options,
+                    refresh);
+            item.setCues(result.getTrack() != null ? result.getTrack().size() : 0);
+            item.setStatus(SubtitleJob.Status.DONE);
+            ok = true;
+        } catch (Exception e) {
+            item.setError(e.getMessage());
+            item.setStatus(SubtitleJob.Status.FAILED);
+            logger.warning("Batch " + batch.getId() + ": " + item.getVideoId() + " failed: " + e.getMessage());
+        }
+        item.setElapsedMs(System.currentTimeMillis() - begin);
+        if (batch.itemFinished(ok))
+            finish(batch);
+    }
+
+    private void fail(BatchIngest batch, String error) {
+        batch.setError(error);
+        batch.setFinishedAt(System.currentTimeMillis());
+        batch.setStatus(BatchIngest.Status.FAILED);
+    }
+
+    private void finish(BatchIngest batch) {
+        // Before the status: a finished batch without finishedAt looks expired
+        batch.setFinishedAt(System.currentTimeMillis());
+        batch.setStatus(BatchIngest.Status.DONE);
+        logger.info("Batch " + batch.getId() + " done: " + batch.getSucceeded() + " ok, " + batch.getFailed()
+                + " failed");
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictFinished() {
+        long cutoff = System.currentTimeMillis() - jobTtlMinutes * 60_000L;
+        batches.values().removeIf(
+                batch -> batch.isFinished() && batch.getFinishedAt() > 0 && batch.getFinishedAt() < cutoff);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batches", batches.size());
+        stats.put("batchActive", workers.getActiveCount());
+        stats.put("batchQueued", workers.getQueue().size());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
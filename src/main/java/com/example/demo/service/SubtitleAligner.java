@@ -0,0 +1,340 @@
+package com.example.demo.service;
+
+import com.example.demo.model.subtitle.SubtitleTrack;
+
+import java.util.Arrays;
+
+/**
+ * Aligns a target (translation) track onto a source track.
+ *
+ * Both tracks are walked in start-time order with two pointers, so aligning
+ * n source cues with m target cues costs O(n + m) (plus a sort when a track
+ * is not already time-sorted) instead of the O(n * m) nested scan. In
+ * OVERLAP mode each target is also compared with the source cues that
+ * overlap it, which for subtitles are a handful.
+ *
+ * Modes:
+ * - START: a target matches when its start is within the tolerance of the
+ * source start (the first such target of the track wins).
+ * - OVERLAP: each target is assigned to the source cue it overlaps most,
+ * provided the overlap covers at least {@code minOverlapRatio} of the target.
+ *
+ * With {@code joinMany}, each target is assigned to exactly one source cue
+ * (nearest start, or largest overlap) and all targets assigned to a source
+ * cue are joined (in time order) into one translation; otherwise only the
+ * best match per source cue is used.
+ */
+public class SubtitleAligner {
+
+    public enum Mode {
+        START, OVERLAP
+    }
+
+    private static final int NONE = -1;
+
+    private long toleranceMs = 200;
+    private Mode mode = Mode.START;
+    private boolean joinMany = false;
+    private double minOverlapRatio = 0.5;
+
+    public SubtitleAligner() {
+    }
+
+    public SubtitleAligner(long toleranceMs, Mode mode, boolean joinMany) {
+        this.toleranceMs = toleranceMs;
+        this.mode = mode;
+        this.joinMany = joinMany;
+    }
+
+    /**
+     * Write matching target texts as translations of the source rows.
+     * Rows that already have a translation are left untouched.
+     *
+     * @return number of source rows that received a translation
+     */
+    public int align(SubtitleTrack source, SubtitleTrack target) {
+        if (source.isEmpty() || target.isEmpty())
+            return 0;
+
+        int[] sourceOrder = sortedOrder(source);
+        int[] targetOrder = sortedOrder(target);
+
+        // Per source row: first matched target, and a chain of further targets
+        int[] firstMatch = new int[source.size()];
+        int[] nextMatch = new int[target.size()];
+        long[] bestScore = new long[source.size()];
+        Arrays.fill(firstMatch, NONE);
+        Arrays.fill(nextMatch, NONE);
+
+        if (mode == Mode.OVERLAP) {
+            matchByOverlap(source, sourceOrder, target, targetOrder, firstMatch, nextMatch, bestScore);
+        } else {
+            matchByStart(source, sourceOrder, target, targetOrder, firstMatch, nextMatch);
+        }
+
+        return applyMatches(source, target, firstMatch, nextMatch);
+    }
+
+    private void matchByStart(SubtitleTrack source, int[] sourceOrder, SubtitleTrack target, int[] targetOrder,
+            int[] firstMatch, int[] nextMatch) {
+        if (joinMany) {
+            joinByStart(source, sourceOrder, target, targetOrder, firstMatch, nextMatch);
+            return;
+        }
+
+        Cursor cursor = new Cursor(target, targetOrder);
+        for (int k = 0; k < source.size(); k++) {
+            int row = row(sourceOrder, k);
+            firstMatch[row] = cursor.match(source.getStartTime(row));
+        }
+    }
+
+    /**
+     * Streaming START-mode matcher: feed source start times one by one.
+     * Meant for starts arriving in ascending order; a start that goes back in
+     * time re-positions the cursor with a binary search.
+     */
+    public Cursor cursor(SubtitleTrack target) {
+        return new Cursor(target, sortedOrder(target));
+    }
+
+    public class Cursor {
+        private final SubtitleTrack target;
+        private final int[] targetOrder;
+        private int lo = 0;
+        private long lastStart = Long.MIN_VALUE;
+
+        private Cursor(SubtitleTrack target, int[] targetOrder) {
+            this.target = target;
+            this.targetOrder = targetOrder;
+        }
+
+        /**
+         * @return target row whose start is within the tolerance of start, or -1
+         */
+        public int match(long start) {
+            if (start < lastStart) {
+                lo = lowerBound(start - toleranceMs);
+            }
+            lastStart = start;
+
+            // First target with start > start - tolerance. Starts are
+            // ascending, so this pointer never moves back.
+            while (lo < target.size() && target.getStartTime(row(targetOrder, lo)) <= start - toleranceMs)
+                lo++;
+
+            // Earliest target row in the window (for sorted tracks simply the
+            // first one), same pick as a scan over the target list
+            int match = NONE;
+            for (int j = lo; j < target.size(); j++) {
+                int targetRow = row(targetOrder, j);
+                if (target.getStartTime(targetRow) >= start + toleranceMs)
+                    break;
+                if (match == NONE || targetRow < match)
+                    match = targetRow;
+                if (targetOrder == null)
+                    break;
+            }
+            return match;
+        }
+
+        // First position whose start is > value
+        private int lowerBound(long value) {
+            int a = 0;
+            int b = target.size();
+            while (a < b) {
+                int mid = (a + b) >>> 1;
+                if (target.getStartTime(row(targetOrder, mid)) <= value) {
+                    a = mid + 1;
+                } else {
+                    b = mid;
+                }
+            }
+            return a;
+        }
+    }
+
+    /**
+     * Many-to-one: every target goes to the source whose start is nearest
+     * (within the tolerance), so several targets can end up on one source.
+     */
+    private void joinByStart(SubtitleTrack source, int[] sourceOrder, SubtitleTrack target, int[] targetOrder,
+            int[] firstMatch, int[] nextMatch) {
+        int lo = 0;
+        int[] lastMatch = new int[source.size()];
+
+        for (int j = 0; j < target.size(); j++) {
+            int targetRow = row(targetOrder, j);
+            long start = target.getStartTime(targetRow);
+
+            while (lo < source.size() && source.getStartTime(row(sourceOrder, lo)) <= start - toleranceMs)
+                lo++;
+
+            int best = NONE;
+            long bestDistance = Long.MAX_VALUE;
+            for (int k = lo; k < source.size(); k++) {
+                int row = row(sourceOrder, k);
+                long distance = source.getStartTime(row) - start;
+                if (distance >= toleranceMs)
+                    break;
+                if (Math.abs(distance) < bestDistance) {
+                    bestDistance = Math.abs(distance);
+                    best = row;
+                }
+            }
+            if (best == NONE)
+                continue;
+
+            if (firstMatch[best] == NONE) {
+                firstMatch[best] = targetRow;
+            } else {
+                nextMatch[lastMatch[best]] = targetRow;
+            }
+            lastMatch[best] = targetRow;
+        }
+    }
+
+    private void matchByOverlap(SubtitleTrack source, int[] sourceOrder, SubtitleTrack target, int[] targetOrder,
+            int[] firstMatch, int[] nextMatch, long[] bestScore) {
+        // Sources that started before the end of a target so far and have not
+        // ended before its start, in start order. Target starts ascend, so a
+        // source dropped once never overlaps a later target; a long source
+        // stays in here without holding back the ones after it.
+        int[] active = new int[source.size()];
+        int activeCount = 0;
+        int next = 0;
+        int[] lastMatch = joinMany ? new int[source.size()] : null;
+
+        for (int j = 0; j < target.size(); j++) {
+            int targetRow = row(targetOrder, j);
+            long tStart = target.getStartTime(targetRow);
+            long tEnd = target.getEndTime(targetRow);
+            long tDuration = Math.max(1, tEnd - tStart);
+
+            while (next < source.size() && source.getStartTime(row(sourceOrder, next)) < tEnd)
+                active[activeCount++] = row(sourceOrder, next++);
+
+            int best = NONE;
+            long bestOverlap = 0;
+            int kept = 0;
+            for (int k = 0; k < activeCount; k++) {
+                int row = active[k];
+                long sEnd = source.getEndTime(row);
+                if (sEnd <= tStart)
+                    continue;
+                active[kept++] = row;
+                long overlap = Math.min(tEnd, sEnd) - Math.max(tStart, source.getStartTime(row));
+                if (overlap > bestOverlap) {
+                    bestOverlap = overlap;
+                    best = row;
+                }
+            }
+            activeCount = kept;
+
+            if (best == NONE || bestOverlap < minOverlapRatio * tDuration)
+                continue;
+
+            if (joinMany) {
+                if (firstMatch[best] == NONE) {
+                    firstMatch[best] = targetRow;
+                } else {
+                    nextMatch[lastMatch[best]] = targetRow;
+                }
+                lastMatch[best] = targetRow;
+            } else if (bestOverlap > bestScore[best]) {
+                bestScore[best] = bestOverlap;
+                firstMatch[best] = targetRow;
+            }
+        }
+    }
+
+    private int applyMatches(SubtitleTrack source, SubtitleTrack target, int[] firstMatch, int[] nextMatch) {
+        int matched = 0;
+        StringBuilder joined = null;
+
+        for (int row = 0; row < source.size(); row++) {
+            int first = firstMatch[row];
+            if (first == NONE || source.getTranslationLength(row) > 0)
+                continue;
+
+            if (nextMatch[first] == NONE) {
+                // Target's "original" is the translation text
+                source.setTranslation(row, target, first);
+            } else {
+                if (joined == null)
+                    joined = new StringBuilder();
+                joined.setLength(0);
+                for (int t = first; t != NONE; t = nextMatch[t]) {
+                    if (joined.length() > 0)
+                        joined.append(' ');
+                    joined.append(target.textArena(), target.getOriginalOffset(t), target.getOriginalLength(t));
+                }
+                source.setTranslation(row, joined);
+            }
+            matched++;
+        }
+        return matched;
+    }
+
+    /**
+     * Rows ordered by start time (stable), or null when the track is already
+     * sorted (identity order).
+     */
+    private static int[] sortedOrder(SubtitleTrack track) {
+        boolean sorted = true;
+        for (int i = 1; i < track.size() && sorted; i++) {
+            sorted = track.getStartTime(i - 1) <= track.getStartTime(i);
+        }
+        if (sorted)
+            return null;
+
+        // Pack (start, row) into one long so a primitive sort keeps it stable
+        long[] keys = new long[track.size()];
+        for (int i = 0; i < track.size(); i++) {
+            keys[i] = (Math.max(0, track.getStartTime(i)) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] order = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    private static int row(int[] order, int position) {
+        return order == null ? position : order[position];
+    }
+
+    public long getToleranceMs() {
+        return toleranceMs;
+    }
+
+    public void setToleranceMs(long toleranceMs) {
+        this.toleranceMs = toleranceMs;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public boolean isJoinMany() {
+        return joinMany;
+    }
+
+    public void setJoinMany(boolean joinMany) {
+        this.joinMany = joinMany;
+    }
+
+    public double getMinOverlapRatio() {
+        return minOverlapRatio;
+    }
+
+    public void setMinOverlapRatio(double minOverlapRatio) {
+        this.minOverlapRatio = minOverlapRatio;
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * In-memory index of the sublingo directories: videoId -> the files present
+ * for it (SRT per language, merged SRT, track and manifest, audio), by name.
+ *
+ * Built with one listing of every storage directory (see SubtitleStorage)
+ * at startup and kept current by a WatchService, so lookups do not touch
+ * the disk. A file is indexed where it actually is, which may still be the
+ * flat root while the storage migration runs. Files the app just wrote or
+ * moved itself can be recorded with {@link #added(File)} /
+ * {@link #removed(File)}, and a video re-listed with {@link #rescan(String)}
+ * after an external tool wrote its files, as watch events arrive
+ * asynchronously. Without a working WatchService every lookup lists the
+ * directories as before.
+ */
+@Service
+public class SubtitleDirectoryIndex {
+
+    private static final Logger logger = Logger.getLogger(SubtitleDirectoryIndex.class.getName());
+
+    @Autowired
+    private SubtitleStorage storage;
+
+    private final ConcurrentHashMap<String, Map<String, File>> files = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+    private WatchService watchService;
+    private Thread watcher;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong rescans = new AtomicLong();
+
+    /**
+     * The id part of a file name: everything before the first dot.
+     */
+    public static String videoIdOf(String fileName) {
+        int dot = fileName.indexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : null;
+    }
+
+    @PostConstruct
+    public void start() {
+        List<File> dirs = storage.allDirs();
+        try {
+            // Register before listing, so nothing created in between is missed
+            watchService = FileSystems.getDefault().newWatchService();
+            for (File dir : dirs) {
+                dir.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+            }
+            scanAll();
+            watcher = new Thread(this::watch, "sublingo-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+            ready = true;
+            logger.info("Indexed " + files.size() + " videos in " + dirs.size() + " directories");
+        } catch (IOException e) {
+            logger.warning("Watching " + storage.root() + " failed, falling back to directory scans: "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Files of a video by name (empty if none). Read-only.
+     */
+    public Map<String, File> files(String videoId) {
+        lookups.incrementAndGet();
+        if (!ready)
+            return list(videoId);
+        Map<String, File> named = files.get(videoId);
+        return named != null ? Collections.unmodifiableMap(named) : Collections.emptyMap();
+    }
+
+    /**
+     * Ids of all indexed videos (a live, read-only view). Empty until the
+     * index is ready.
+     */
+    public Set<String> videoIds() {
+        return Collections.unmodifiableSet(files.keySet());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Record a file the app has just written (or moved here).
+     */
+    public void added(File file) {
+        String name = file.getName();
+        String videoId = videoIdOf(name);
+        if (videoId == null)
+            return;
+        files.compute(videoId, (k, named) -> {
+            if (named == null)
+                named = new ConcurrentHashMap<>();
+            named.put(name, file);
+            return named;
+        });
+    }
+
+    /**
+     * Record that a file is gone. Ignored if the index already knows the
+     * name at another location (the file was moved there).
+     */
+    public void removed(File file) {
+        String videoId = videoIdOf(file.getName());
+        if (videoId == null)
+            return;
+        files.computeIfPresent(videoId, (k, named) -> {
+            named.remove(file.getName(), file);
+            return named.isEmpty() ? null : named;
+        });
+    }
+
+    /**
+     * Re-list the files of one video, after an external process wrote them.
+     */
+    public void rescan(String videoId) {
+        if (!ready)
+            return;
+        rescans.incrementAndGet();
+        Map<String, File> named = list(videoId);
+        if (named.isEmpty()) {
+            files.remove(videoId);
+        } else {
+            files.put(videoId, new ConcurrentHashMap<>(named));
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", ready);
+        stats.put("layout", storage.getLayout());
+        stats.put("videos", files.size());
+        stats.put("lookups", lookups.get());
+        stats.put("events", events.get());
+        stats.put("rescans", rescans.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void stop() {
+        ready = false;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // shutting down anyway
+            }
+        }
+    }
+
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                events.incrementAndGet();
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    logger.info("Watch events overflowed, re-listing " + storage.root());
+                    scanAll();
+                    continue;
+                }
+                File file = dir.resolve((Path) event.context()).toFile();
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    if (file.isFile())
+                        added(file);
+                } else {
+                    removed(file);
+                }
+            }
+            if (!key.reset()) {
+                logger.warning("Directory " + dir + " is no longer watched, falling back to scans");
+                ready = false;
+                return;
+            }
+        }
+    }
+
+    private void scanAll() {
+        Map<String, Map<String, File>> scanned = new ConcurrentHashMap<>();
+        for (File dir : storage.allDirs()) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.toPath(), Files::isRegularFile)) {
+                for (Path path : stream) {
+                    String name = path.getFileName().toString();
+                    String videoId = videoIdOf(name);
+                    if (videoId != null)
+                        scanned.computeIfAbsent(videoId, k -> new ConcurrentHashMap<>()).put(name, path.toFile());
+                }
+            } catch (IOException e) {
+                logger.warning("Listing " + dir + " failed: " + e.getMessage());
+            }
+        }
+        files.keySet().retainAll(scanned.keySet());
+        files.putAll(scanned);
+    }
+
+    // The video's own directory wins over a leftover in the root
+    private Map<String, File> list(String videoId) {
+        Map<String, File> named = new TreeMap<>();
+        String prefix = videoId + ".";
+        File own = storage.dirFor(videoId);
+        File root = storage.root();
+        for (File dir : own.equals(root) ? List.of(root) : List.of(root, own)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.toPath(),
+                    path -> path.getFileName().toString().startsWith(prefix) && Files.isRegularFile(path))) {
+                for (Path path : stream) {
+                    named.put(path.getFileName().toString(), path.toFile());
+                }
+            } catch (IOException e) {
+                logger.warning("Listing files of " + videoId + " failed: " + e.getMessage());
+            }
+        }
+        return named;
+    }
+}
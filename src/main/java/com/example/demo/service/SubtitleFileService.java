@@ -1,12 +1,23 @@
 package com.example.demo.service;
 
+import com.example.demo.model.subtitle.SubtitleTrack;
+import com.example.demo.utils.GroupCommitWriter;
+import com.example.demo.utils.SubtitleRenderer;
+import com.example.demo.utils.StripedLocks;
+import com.example.demo.utils.SubtitleTrackFile;
+import com.example.demo.utils.YouTubeUrls;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 /**
@@ -20,8 +31,40 @@ public class SubtitleFileService {
 
     private static final Logger logger = Logger.getLogger(SubtitleFileService.class.getName());
 
-    @Value("${erupt.youtube-path}")
-    private String youtubePath;
+    /**
+     * Audio file extensions, in order of preference.
+     */
+    public static final List<String> AUDIO_FORMATS = List.of("m4a", "webm", "opus", "ogg", "mp3");
+
+    private final StripedLocks writeLocks = new StripedLocks(64);
+
+    @Autowired
+    private SubtitleDirectoryIndex directoryIndex;
+
+    @Autowired
+    private SubtitleStorage storage;
+
+    // Force written files to disk before they replace the old ones
+    @Value("${erupt.subtitle.fsync:true}")
+    private boolean fsync = true;
+
+    @Value("${erupt.subtitle.fsync-batch-ms:5}")
+    private long fsyncBatchMs = 5;
+
+    private GroupCommitWriter writer;
+
+    @PostConstruct
+    public void init() {
+        writer = new GroupCommitWriter("sublingo-fsync", fsync, fsyncBatchMs);
+        int swept = writer.sweep(storage.root().toPath());
+        if (swept > 0)
+            logger.info("Removed " + swept + " temp files left by an earlier run");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.close();
+    }
 
     public static class SubtitleFilesDTO {
         private File source;
@@ -41,59 +84,61 @@ public class SubtitleFileService {
         }
     }
 
+    /**
+     * The sublingo root directory, for files not tied to one video. Video
+     * files are located with {@link #resolve(String, String)}.
+     */
     public File getSubtitleDir() {
-        String tempDir = youtubePath + File.separator + "sublingo";
-        File dir = new File(tempDir);
-        if (!dir.exists()) {
-            dir.mkdirs();
-        }
-        return dir;
+        return storage.root();
     }
 
     /**
-     * Scan directory to find the best matching source and target SRT files for a
-     * videoId.
+     * A file of a video by name: where the index has seen it, otherwise
+     * where it would be written under the current storage layout.
      */
-    public SubtitleFilesDTO findSubtitleFiles(String videoId) {
-        File dir = getSubtitleDir();
-        if (!dir.exists()) {
-            return new SubtitleFilesDTO(null, null);
-        }
+    public File resolve(String videoId, String name) {
+        File file = directoryIndex.files(videoId).get(name);
+        return file != null ? file : storage.fileFor(videoId, name);
+    }
 
+    /**
+     * Find the best matching source and target SRT files for a videoId in the
+     * directory index.
+     */
+    public SubtitleFilesDTO findSubtitleFiles(String videoId) {
         // Look for .srt files
-        File[] files = dir.listFiles((d, name) -> name.startsWith(videoId) && name.endsWith(".srt"));
-
         File bestSource = null;
         File bestTarget = null;
 
-        if (files != null) {
-            for (File f : files) {
-                String name = f.getName();
-
-                // Extract lang code: videoId.LANG.srt
-                // Be careful with substrings
-                if (name.length() <= videoId.length() + 4)
-                    continue; // safety for ".srt"
-
-                String suffix = name.substring(videoId.length());
-                if (suffix.startsWith("."))
-                    suffix = suffix.substring(1);
-                String lang = suffix.replace(".srt", "").toLowerCase();
-
-                logger.info("Found SRT: " + name + " (Lang: " + lang + ")");
-
-                // Strategy Source: Japanese (ja) > English (en)
-                if (lang.startsWith("ja")) {
+        for (Map.Entry<String, File> entry : new TreeMap<>(directoryIndex.files(videoId)).entrySet()) {
+            String name = entry.getKey();
+            if (!name.endsWith(".srt"))
+                continue;
+            File f = entry.getValue();
+
+            // Extract lang code: videoId.LANG.srt
+            // Be careful with substrings
+            if (name.length() <= videoId.length() + 4)
+                continue; // safety for ".srt"
+
+            String suffix = name.substring(videoId.length());
+            if (suffix.startsWith("."))
+                suffix = suffix.substring(1);
+            String lang = suffix.replace(".srt", "").toLowerCase();
+
+            logger.info("Found SRT: " + name + " (Lang: " + lang + ")");
+
+            // Strategy Source: Japanese (ja) > English (en)
+            if (lang.startsWith("ja")) {
+                bestSource = f;
+            } else if (lang.startsWith("en") && (bestSource == null || !bestSource.getName().contains(".ja"))) {
+                if (bestSource == null)
                     bestSource = f;
-                } else if (lang.startsWith("en") && (bestSource == null || !bestSource.getName().contains(".ja"))) {
-                    if (bestSource == null)
-                        bestSource = f;
-                }
-
-                // Strategy Target: Chinese (zh)
-                if (lang.startsWith("zh")) {
-                    bestTarget = f;
-                }
+            }
+
+            // Strategy Target: Chinese (zh)
+            if (lang.startsWith("zh")) {
+                bestTarget = f;
             }
         }
 
@@ -112,9 +157,8 @@ public class SubtitleFileService {
             return files.getSource();
         } else if ("merged".equalsIgnoreCase(type)) {
             // First check for the .merged.srt we generated
-            File dir = getSubtitleDir();
-            File merged = new File(dir, videoId + ".merged.srt");
-            if (merged.exists())
+            File merged = directoryIndex.files(videoId).get(videoId + ".merged.srt");
+            if (merged != null)
                 return merged;
 
             // Fallback?
@@ -124,113 +168,122 @@ public class SubtitleFileService {
     }
 
     /**
-     * Write string content to a new SRT file
+     * Render the track into {videoId}.merged.srt, streaming through a
+     * FileChannel instead of building the file content in memory. The file
+     * is replaced atomically (see {@link #writeFile(File, GroupCommitWriter.Content)}).
      */
-    /**
-     * Write string content to a new SRT file
-     */
-    public void saveMergedSrt(String videoId, String content) {
-        File dir = getSubtitleDir();
-        File mergedFile = new File(sublingoDir(), videoId + ".merged.srt");
+    public void saveMergedSrt(String videoId, SubtitleTrack track) {
+        File mergedFile = storage.fileFor(videoId, videoId + ".merged.srt");
+        ReentrantLock lock = writeLock(videoId);
+        lock.lock();
         try {
-            Files.writeString(mergedFile.toPath(), content, StandardCharsets.UTF_8);
+            writeFile(mergedFile, channel -> new SubtitleRenderer(SubtitleRenderer.Format.SRT).render(track, channel));
             logger.info("Saved Merged SRT to: " + mergedFile.getAbsolutePath());
         } catch (IOException e) {
             logger.warning("Failed to save merged SRT: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            lock.unlock();
         }
     }
 
-    private File sublingoDir() {
-        String path = youtubePath + File.separator + "sublingo";
-        File dir = new File(path);
-        if (!dir.exists())
-            dir.mkdirs();
-        return dir;
+    /**
+     * Replace a video file: written aside, forced to disk and renamed into
+     * place (directory syncs group-committed with concurrent writes), then
+     * indexed. Readers
+     * never see a partial file, also not after a crash.
+     */
+    public void writeFile(File file, GroupCommitWriter.Content content) throws IOException {
+        writer.write(file.toPath(), content);
+        directoryIndex.added(file);
+    }
+
+    public Map<String, Object> writeStats() {
+        return writer.stats();
     }
 
     /**
-     * Download Audio using yt-dlp
+     * Lock guarding writes of a video's files in the sublingo directory.
+     * Striped, so hold it only while writing.
      */
-    public File downloadAudio(String videoId) {
-        File dir = sublingoDir();
-        File targetFile = new File(dir, videoId + ".mp3");
+    public ReentrantLock writeLock(String videoId) {
+        return writeLocks.get(videoId);
+    }
 
-        if (targetFile.exists() && targetFile.length() > 0) {
-            logger.info("Audio already exists: " + targetFile.getAbsolutePath());
-            return targetFile;
-        }
+    /**
+     * Whether a video id taken from a request can name files: a YouTube id,
+     * or one the directory index knows. Anything else (e.g. "../x") would
+     * resolve outside the storage root.
+     */
+    public boolean isValidVideoId(String videoId) {
+        if (videoId == null)
+            return false;
+        return videoId.equals(YouTubeUrls.extractVideoId(videoId)) || directoryIndex.videoIds().contains(videoId);
+    }
 
-        logger.info("Starting Audio Download for: " + videoId);
+    public File getTrackFile(String videoId) {
+        return resolve(videoId, videoId + ".track.bin");
+    }
 
+    /**
+     * Persist the processed track in the binary format (see
+     * {@link SubtitleTrackFile}) so it can be loaded again without parsing.
+     */
+    public void saveTrackFile(String videoId, String key, SubtitleTrack track) {
+        File trackFile = storage.fileFor(videoId, videoId + ".track.bin");
+        // Readers may be loading the old file: the new one is swapped in
+        ReentrantLock lock = writeLock(videoId);
+        lock.lock();
         try {
-            // Command Logic
-            // yt-dlp --cookies ... -f bestaudio --extract-audio --audio-format m4a -o
-            // "%(id)s.%(ext)s" URL
-            String cookiesPath = "C:\\666_sdk\\cookies.txt"; // Hardcoded from user prompt
-
-            ProcessBuilder pb = new ProcessBuilder(
-                    "yt-dlp",
-                    "--cookies", cookiesPath,
-                    "--js-runtimes", "node",
-                    "-f", "bestaudio/best",
-                    "--extract-audio",
-                    "--audio-format", "mp3",
-                    "--audio-quality", "0",
-                    "-o", videoId + ".%(ext)s",
-                    "https://www.youtube.com/watch?v=" + videoId);
-
-            pb.directory(dir);
-            pb.redirectErrorStream(true);
-
-            Process process = pb.start();
-
-            // Read output to log
-            try (java.io.BufferedReader reader = new java.io.BufferedReader(
-                    new java.io.InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    logger.fine("[yt-dlp] " + line);
-                }
-            }
-
-            int exitCode = process.waitFor();
-
-            if (exitCode == 0) {
-                if (targetFile.exists()) {
-                    logger.info("Audio Downloaded Successfully: " + targetFile.getAbsolutePath());
-                    return targetFile;
-                } else {
-                    // Verify if mp3 exists
-                    File mp3 = new File(dir, videoId + ".mp3");
-                    if (mp3.exists())
-                        return mp3;
-                }
-            } else {
-                logger.severe("yt-dlp exited with code: " + exitCode);
-            }
-
-        } catch (Exception e) {
-            logger.severe("Audio Download Failed: " + e.getMessage());
-            e.printStackTrace();
+            writeFile(trackFile, channel -> SubtitleTrackFile.write(track, key, channel));
+            logger.fine("Saved track file: " + trackFile.getAbsolutePath());
+        } catch (IOException e) {
+            logger.warning("Failed to save track file: " + e.getMessage());
+        } finally {
+            lock.unlock();
         }
+    }
 
-        return null;
+    /**
+     * Read the binary track of a video, or null if there is none (or it is
+     * unreadable). With a key, also null when the file was built from
+     * something else.
+     */
+    public SubtitleTrackFile.View readTrackFile(String videoId, String key) {
+        File trackFile = getTrackFile(videoId);
+        if (!trackFile.exists())
+            return null;
+        try {
+            SubtitleTrackFile.View view = SubtitleTrackFile.read(trackFile.toPath());
+            if (key != null && !key.equals(view.getKey()))
+                return null;
+            return view;
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Ignoring unreadable track file " + trackFile.getName() + ": " + e.getMessage());
+            return null;
+        }
     }
 
+    /**
+     * The stored audio of a video. A native download (m4a, webm, opus) is
+     * preferred over mp3, which is the legacy format or a transcode.
+     */
     public File getAudioFile(String videoId) {
-        File dir = sublingoDir();
-        // Prefer mp3
-        File mp3 = new File(dir, videoId + ".mp3");
-        if (mp3.exists())
-            return mp3;
-
-        // Check others
-        File[] matches = dir.listFiles((d, n) -> n.startsWith(videoId)
-                && (n.endsWith(".m4a") || n.endsWith(".webm") || n.endsWith(".mp3") || n.endsWith(".opus")));
-        if (matches != null && matches.length > 0)
-            return matches[0];
+        return getAudioFile(videoId, null);
+    }
 
+    /**
+     * @param format an extension (e.g. "mp3") to accept only that format
+     */
+    public File getAudioFile(String videoId, String format) {
+        Map<String, File> files = directoryIndex.files(videoId);
+        if (format != null)
+            return files.get(videoId + "." + format);
+        for (String ext : AUDIO_FORMATS) {
+            File file = files.get(videoId + "." + ext);
+            if (file != null)
+                return file;
+        }
         return null; // Not found
     }
 }
@@ -0,0 +1,165 @@
+package com.example.demo.service;
+
+import com.example.demo.model.subtitle.SubtitleFilterRule;
+import com.example.demo.utils.SubtitleRuleMatcher;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Holds the compiled subtitle noise rules ({@link SubtitleFilterRule}).
+ *
+ * Rules are compiled once into a {@link SubtitleRuleMatcher} and swapped
+ * atomically when they change in the admin (see SubtitleFilterRuleDataProxy)
+ * or on the periodic refresh, so no restart is needed.
+ * Until the database has been read, the built-in defaults are used.
+ */
+@Service
+public class SubtitleFilterEngine {
+
+    private static final Logger logger = Logger.getLogger(SubtitleFilterEngine.class.getName());
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private volatile SubtitleRuleMatcher matcher = compile(defaultRules());
+    private volatile String rulesVersion = fingerprint(defaultRules());
+
+    /**
+     * Seed the default rules on first start, then load them.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void init() {
+        try {
+            Long count = entityManager.createQuery("select count(r) from SubtitleFilterRule r", Long.class)
+                    .getSingleResult();
+            if (count == 0) {
+                for (SubtitleFilterRule rule : defaultRules()) {
+                    entityManager.persist(rule);
+                }
+                logger.info("Seeded default subtitle filter rules");
+            }
+        } catch (Exception e) {
+            logger.warning("Failed to seed subtitle filter rules: " + e.getMessage());
+        }
+        reload();
+    }
+
+    // Picks up changes made on other instances
+    @Scheduled(fixedDelayString = "${erupt.subtitle.filter-reload-ms:60000}", initialDelay = 60000)
+    public void scheduledReload() {
+        reload();
+    }
+
+    public void reload() {
+        try {
+            List<SubtitleFilterRule> rules = entityManager
+                    .createQuery("from SubtitleFilterRule where enabled = true", SubtitleFilterRule.class)
+                    .getResultList();
+            matcher = compile(rules);
+            rulesVersion = fingerprint(rules);
+            logger.fine("Compiled " + rules.size() + " subtitle filter rules");
+        } catch (Exception e) {
+            logger.warning("Failed to reload subtitle filter rules, keeping previous set: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return {@link SubtitleRuleMatcher#KEEP}, {@link SubtitleRuleMatcher#AUXILIARY}
+     *         or {@link SubtitleRuleMatcher#DROP}
+     */
+    public int classify(CharSequence text, int offset, int length) {
+        return matcher.classify(text, offset, length);
+    }
+
+    public boolean isDropped(CharSequence text) {
+        return matcher.classify(text) == SubtitleRuleMatcher.DROP;
+    }
+
+    public boolean isAuxiliary(CharSequence text, int offset, int length) {
+        return matcher.classify(text, offset, length) == SubtitleRuleMatcher.AUXILIARY;
+    }
+
+    /**
+     * Changes whenever the effective rule set changes, so outputs built with
+     * other rules can be told apart.
+     */
+    public String getRulesVersion() {
+        return rulesVersion;
+    }
+
+    static String fingerprint(List<SubtitleFilterRule> rules) {
+        List<String> parts = new ArrayList<>();
+        for (SubtitleFilterRule rule : rules) {
+            parts.add(rule.getRuleType() + ":" + rule.getRuleValue() + ":" + rule.getAction());
+        }
+        Collections.sort(parts);
+        return Integer.toHexString(parts.hashCode());
+    }
+
+    static SubtitleRuleMatcher compile(List<SubtitleFilterRule> rules) {
+        SubtitleRuleMatcher.Builder builder = SubtitleRuleMatcher.builder();
+        for (SubtitleFilterRule rule : rules) {
+            String value = rule.getRuleValue();
+            if (value == null || rule.getRuleType() == null)
+                continue;
+            int action = SubtitleFilterRule.ACTION_DROP.equals(rule.getAction()) ? SubtitleRuleMatcher.DROP
+                    : SubtitleRuleMatcher.AUXILIARY;
+            try {
+                switch (rule.getRuleType()) {
+                    case SubtitleFilterRule.TYPE_NUMERIC:
+                        builder.numeric(Integer.parseInt(value.trim()), action);
+                        break;
+                    case SubtitleFilterRule.TYPE_SHORT:
+                        builder.shortText(Integer.parseInt(value.trim()), action);
+                        break;
+                    case SubtitleFilterRule.TYPE_BRACKET:
+                        String pair = value.trim();
+                        if (pair.length() == 2)
+                            builder.bracket(pair.charAt(0), pair.charAt(1), action);
+                        break;
+                    case SubtitleFilterRule.TYPE_FILLER:
+                        builder.filler(value.trim(), action);
+                        break;
+                    case SubtitleFilterRule.TYPE_KEYWORD:
+                        builder.keyword(value, action);
+                        break;
+                    default:
+                        logger.warning("Unknown subtitle filter rule type: " + rule.getRuleType());
+                }
+            } catch (NumberFormatException e) {
+                logger.warning("Invalid value for " + rule.getRuleType() + " rule: " + value);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * The rules that used to be hard-coded in SubtitleProcessingService.
+     */
+    static List<SubtitleFilterRule> defaultRules() {
+        List<SubtitleFilterRule> rules = new ArrayList<>();
+        // Numeric noise (<= 5 digits)
+        rules.add(new SubtitleFilterRule(SubtitleFilterRule.TYPE_NUMERIC, "5", SubtitleFilterRule.ACTION_DROP));
+        // Sound effects like [laugh], [Music]
+        rules.add(new SubtitleFilterRule(SubtitleFilterRule.TYPE_BRACKET, "[]", SubtitleFilterRule.ACTION_DROP));
+        // Very short (<= 2 chars)
+        rules.add(new SubtitleFilterRule(SubtitleFilterRule.TYPE_SHORT, "2", SubtitleFilterRule.ACTION_AUXILIARY));
+        // Specific Filler Words (Japanese/Chinese/English)
+        for (String word : new String[] { "ah", "oh", "um", "uh", "ま", "あの", "え", "えっと", "嗯", "呃", "那个" }) {
+            rules.add(new SubtitleFilterRule(SubtitleFilterRule.TYPE_FILLER, word,
+                    SubtitleFilterRule.ACTION_AUXILIARY));
+        }
+        return rules;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.demo.service;
+
+import com.example.demo.model.subtitle.ProcessedVideo;
+import com.example.demo.model.subtitle.SubtitleJob;
+import com.example.demo.service.pipeline.PipelineOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Runs {@link SubtitleService#processVideo} on a bounded worker pool so the
+ * request thread only submits and returns a job id.
+ *
+ * Progress is pushed to subscribers as server-sent events ("progress" while
+ * running, then "done" or "failed"). Finished jobs are kept for
+ * erupt.subtitle.job-ttl-minutes so late subscribers still get the outcome.
+ */
+@Service
+public class SubtitleJobService {
+
+    private static final Logger logger = Logger.getLogger(SubtitleJobService.class.getName());
+
+    private static final long SSE_TIMEOUT_MS = 10 * 60 * 1000L;
+
+    @Autowired
+    private SubtitleService subtitleService;
+
+    @Value("${erupt.subtitle.job-ttl-minutes:30}")
+    private long jobTtlMinutes = 30;
+
+    private final Map<String, SubtitleJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, List<SseEmitter>> emitters = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor workers;
+
+    public SubtitleJobService(@Value("${erupt.subtitle.job-workers:2}") int workerCount,
+            @Value("${erupt.subtitle.job-queue:100}") int queueSize) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Thread(r, "subtitle-job-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * @throws java.util.concurrent.RejectedExecutionException when the queue is full
+     */
+    public SubtitleJob submit(String url, PipelineOptions options, boolean refresh) {
+        SubtitleJob job = new SubtitleJob(UUID.randomUUID().toString(), url);
+        jobs.put(job.getId(), job);
+        try {
+            workers.execute(() -> run(job, options, refresh));
+        } catch (RuntimeException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        logger.info("Queued subtitle job " + job.getId() + " for " + url);
+        return job;
+    }
+
+    public SubtitleJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Subscribe to a job's events. The current state is sent immediately; for
+     * a finished job that is the final event and the stream completes.
+     */
+    public SseEmitter subscribe(SubtitleJob job) {
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+        if (job.isFinished()) {
+            send(job, emitter);
+            return emitter;
+        }
+        List<SseEmitter> list = emitters.computeIfAbsent(job.getId(), k -> new CopyOnWriteArrayList<>());
+        list.add(emitter);
+        emitter.onCompletion(() -> list.remove(emitter));
+        emitter.onTimeout(() -> list.remove(emitter));
+        emitter.onError(e -> list.remove(emitter));
+        // Sent after registering, so an event in between is at worst seen twice
+        send(job, emitter);
+        // Finished meanwhile: publish() may have dropped the entry before this
+        // list was added, nothing would remove it
+        if (job.isFinished())
+            emitters.remove(job.getId(), list);
+        return emitter;
+    }
+
+    private void run(SubtitleJob job, PipelineOptions options, boolean refresh) {
+        job.setStatus(SubtitleJob.Status.RUNNING);
+        update(job, "start", 1);
+        try {
+            ProcessedVideo result = subtitleService.processVideo(job.getUrl(), options, refresh,
+                    (stage, percent) -> update(job, stage, percent));
+            job.setVideoId(result.getVideoId());
+            job.setResult(result);
+            job.setProgress(100);
+            job.setStage("done");
+            // Before the status: a finished job without finishedAt looks expired
+            job.setFinishedAt(System.currentTimeMillis());
+            job.setStatus(SubtitleJob.Status.DONE);
+        } catch (Exception e) {
+            job.setError(e.getMessage());
+            job.setStage("failed");
+            job.setFinishedAt(System.currentTimeMillis());
+            job.setStatus(SubtitleJob.Status.FAILED);
+            logger.warning("Subtitle job " + job.getId() + " failed: " + e.getMessage());
+        }
+        publish(job);
+    }
+
+    private void update(SubtitleJob job, String stage, int percent) {
+        job.setStage(stage);
+        job.setProgress(percent);
+        publish(job);
+    }
+
+    private void publish(SubtitleJob job) {
+        List<SseEmitter> list = emitters.get(job.getId());
+        if (list == null)
+            return;
+        for (SseEmitter emitter : list) {
+            send(job, emitter);
+        }
+        if (job.isFinished())
+            emitters.remove(job.getId());
+    }
+
+    private void send(SubtitleJob job, SseEmitter emitter) {
+        String event = job.getStatus() == SubtitleJob.Status.DONE ? "done"
+                : job.getStatus() == SubtitleJob.Status.FAILED ? "failed" : "progress";
+        try {
+            emitter.send(SseEmitter.event().name(event).data(job));
+            if (job.isFinished())
+                emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            // Client went away
+            emitter.completeWithError(e);
+        }
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictFinished() {
+        long cutoff = System.currentTimeMillis() - jobTtlMinutes * 60_000L;
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt() > 0 && job.getFinishedAt() < cutoff);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("jobs", jobs.size());
+        stats.put("active", workers.getActiveCount());
+        stats.put("queued", workers.getQueue().size());
+        stats.put("completed", workers.getCompletedTaskCount());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.demo.service;
+
+import com.example.demo.model.subtitle.SubtitleManifest;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Reads and writes <videoId>.manifest.json and decides whether the stored
+ * inputs are fresh enough to skip yt-dlp.
+ *
+ * Freshness policy:
+ * - the recorded source (and target, if any) files still exist and are
+ * unchanged: same size and mtime, or else the same SHA-256
+ * - metadata is younger than erupt.subtitle.meta-max-age-hours (0 = forever)
+ * - a video without a translation is re-fetched after
+ * erupt.subtitle.missing-target-retry-hours, in case one was added
+ *
+ * A different pipeline version does not require yt-dlp; outputs are then
+ * rebuilt locally from the inputs.
+ */
+@Service
+public class SubtitleManifestService {
+
+    private static final Logger logger = Logger.getLogger(SubtitleManifestService.class.getName());
+
+    public static final String ROLE_SOURCE = "source";
+    public static final String ROLE_TARGET = "target";
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Autowired
+    private SubtitleFileService subtitleFileService;
+
+    @Autowired
+    private SubtitleStorage storage;
+
+    @Value("${erupt.subtitle.meta-max-age-hours:720}")
+    private long metaMaxAgeHours = 720;
+
+    @Value("${erupt.subtitle.missing-target-retry-hours:24}")
+    private long missingTargetRetryHours = 24;
+
+    public File getManifestFile(String videoId) {
+        return subtitleFileService.resolve(videoId, videoId + ".manifest.json");
+    }
+
+    public SubtitleManifest read(String videoId) {
+        File file = getManifestFile(videoId);
+        if (!file.exists())
+            return null;
+        try {
+            return objectMapper.readValue(file, SubtitleManifest.class);
+        } catch (IOException e) {
+            logger.warning("Ignoring unreadable manifest " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Record the inputs a result was built from. Hashes are only recomputed
+     * for files that changed since the previous manifest.
+     */
+    public void write(SubtitleManifest manifest, SubtitleFileService.SubtitleFilesDTO files, SubtitleManifest previous) {
+        // previous may be the manifest itself
+        List<SubtitleManifest.InputFile> known = previous != null ? new ArrayList<>(previous.getInputs())
+                : new ArrayList<>();
+        manifest.getInputs().clear();
+        addInput(manifest, ROLE_SOURCE, files.getSource(), known);
+        addInput(manifest, ROLE_TARGET, files.getTarget(), known);
+        save(manifest);
+    }
+
+    private void save(SubtitleManifest manifest) {
+        File file = storage.fileFor(manifest.getVideoId(), manifest.getVideoId() + ".manifest.json");
+        ReentrantLock lock = subtitleFileService.writeLock(manifest.getVideoId());
+        lock.lock();
+        try {
+            byte[] json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(manifest);
+            subtitleFileService.writeFile(file, channel -> {
+                ByteBuffer buf = ByteBuffer.wrap(json);
+                while (buf.hasRemaining())
+                    channel.write(buf);
+            });
+        } catch (IOException e) {
+            logger.warning("Failed to write manifest " + file.getName() + ": " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inputs that were touched but still hash the same get their new mtime
+     * saved, so they are not hashed again on every check.
+     *
+     * @return null if the manifest is fresh, otherwise why yt-dlp has to run
+     */
+    public String staleReason(SubtitleManifest manifest) {
+        if (manifest == null)
+            return "no manifest";
+        long now = System.currentTimeMillis();
+        long age = now - manifest.getFetchedAt();
+        if (metaMaxAgeHours > 0 && age > metaMaxAgeHours * 3600_000L)
+            return "metadata older than " + metaMaxAgeHours + "h";
+
+        boolean hasSource = false;
+        boolean hasTarget = false;
+        boolean touched = false;
+        for (SubtitleManifest.InputFile input : manifest.getInputs()) {
+            File file = subtitleFileService.resolve(manifest.getVideoId(), input.getName());
+            long lastModified = input.getLastModified();
+            if (!matches(input, file))
+                return input.getName() + " changed or missing";
+            touched |= input.getLastModified() != lastModified;
+            hasSource |= ROLE_SOURCE.equals(input.getRole());
+            hasTarget |= ROLE_TARGET.equals(input.getRole());
+        }
+        if (touched)
+            save(manifest);
+        if (!hasSource)
+            return "no source subtitles";
+        if (!hasTarget && age > missingTargetRetryHours * 3600_000L)
+            return "no translation, retrying";
+        return null;
+    }
+
+    private void addInput(SubtitleManifest manifest, String role, File file, List<SubtitleManifest.InputFile> previous) {
+        if (file == null || !file.exists())
+            return;
+        SubtitleManifest.InputFile input = new SubtitleManifest.InputFile();
+        input.setRole(role);
+        input.setName(file.getName());
+        input.setSize(file.length());
+        input.setLastModified(file.lastModified());
+
+        SubtitleManifest.InputFile known = find(previous, file.getName());
+        if (known != null && known.getSize() == input.getSize() && known.getLastModified() == input.getLastModified()
+                && known.getSha256() != null) {
+            input.setSha256(known.getSha256());
+        } else {
+            input.setSha256(sha256(file));
+        }
+        manifest.getInputs().add(input);
+    }
+
+    private static SubtitleManifest.InputFile find(List<SubtitleManifest.InputFile> inputs, String name) {
+        for (SubtitleManifest.InputFile input : inputs) {
+            if (name.equals(input.getName()))
+                return input;
+        }
+        return null;
+    }
+
+    // Size + mtime first; only hash when the file was touched, then take its new mtime
+    private static boolean matches(SubtitleManifest.InputFile input, File file) {
+        if (!file.exists() || file.length() != input.getSize())
+            return false;
+        long lastModified = file.lastModified();
+        if (lastModified == input.getLastModified())
+            return true;
+        if (input.getSha256() == null || !input.getSha256().equals(sha256(file)))
+            return false;
+        input.setLastModified(lastModified);
+        return true;
+    }
+
+    static String sha256(File file) {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                digest.update(buf, 0, n);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            logger.warning("Failed to hash " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -1,13 +1,27 @@
 package com.example.demo.service;
 
+import com.example.demo.model.subtitle.SubtitleTrack;
 import com.example.demo.model.subtitle.VideoInfoVO;
+import com.example.demo.service.pipeline.AlignStage;
+import com.example.demo.service.pipeline.AuxiliaryMergeStage;
+import com.example.demo.service.pipeline.FillGapsStage;
+import com.example.demo.service.pipeline.PipelineOptions;
+import com.example.demo.service.pipeline.SplitLongStage;
+import com.example.demo.service.pipeline.SubtitlePipeline;
+import com.example.demo.service.pipeline.SubtitleStage;
+import com.example.demo.utils.CueReader;
 import com.example.demo.utils.SrtParser;
+import com.example.demo.utils.SubtitleRenderer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * Service specifically for Processing Subtitle Logic
@@ -15,386 +29,119 @@ import java.util.logging.Logger;
  * - Filtering (Garbage removal)
  * - Merging (Dual language alignment)
  * - Generation (SRT Formatting)
+ *
+ * All stages work on the columnar {@link SubtitleTrack}.
  */
 @Service
 public class SubtitleProcessingService {
 
-    private static final Logger logger = Logger.getLogger(SubtitleProcessingService.class.getName());
-
-    @Autowired
-    private SrtParser srtParser;
-
     /**
-     * Parse SRT file and filter out garbage lines
+     * Bump when a change to parsing or the stages changes the output, so
+     * stored results (track files, manifests) are rebuilt.
      */
-    public List<VideoInfoVO.SubtitleItemVO> parseAndFilter(File file) {
-        if (file == null || !file.exists()) {
-            return new java.util.ArrayList<>();
-        }
+    public static final int PIPELINE_VERSION = 1;
 
-        List<VideoInfoVO.SubtitleItemVO> list = srtParser.parse(file);
-
-        // Filter Logic:
-        // 1. Numeric noise (<= 5 digits)
-        // 2. Sound effects like [laugh], [Music]
-        list.removeIf(item -> {
-            String clean = item.getOriginal().trim();
+    @Autowired
+    private SrtParser srtParser;
 
-            // Numeric check
-            String noSpace = clean.replaceAll("\\s+", "");
-            boolean isNumericGarbage = noSpace.matches("\\d+") && noSpace.length() <= 5;
+    @Autowired
+    private SubtitleFilterEngine filterEngine;
 
-            // Bracket check
-            boolean isBracketGarbage = clean.startsWith("[") && clean.endsWith("]");
+    @Value("${erupt.subtitle.merge-tolerance-ms:200}")
+    private long mergeToleranceMs = 200;
 
-            return isNumericGarbage || isBracketGarbage;
-        });
+    @Value("${erupt.subtitle.merge-mode:START}")
+    private SubtitleAligner.Mode mergeMode = SubtitleAligner.Mode.START;
 
-        return list;
-    }
+    @Value("${erupt.subtitle.merge-join-many:false}")
+    private boolean mergeJoinMany = false;
 
     /**
-     * Merge Target subtitles into Source based on timestamp proximity.
-     * Logic: A match is found if start times are within 200ms.
+     * Identifies everything besides the inputs and options that the output
+     * depends on: the pipeline version, the current filter rules and the
+     * configured align defaults that apply when a request leaves them unset.
      */
-    public void mergeSubtitles(List<VideoInfoVO.SubtitleItemVO> sourceList,
-            List<VideoInfoVO.SubtitleItemVO> targetList) {
-        if (sourceList.isEmpty() || targetList.isEmpty()) {
-            return;
-        }
-
-        logger.info("Merging subtitles... Source: " + sourceList.size() + ", Target: " + targetList.size());
-
-        for (VideoInfoVO.SubtitleItemVO sourceItem : sourceList) {
-            long start1 = sourceItem.getStartTime();
-
-            for (VideoInfoVO.SubtitleItemVO targetItem : targetList) {
-                long start2 = targetItem.getStartTime();
-
-                // Tolerance: 200ms absolute difference
-                if (Math.abs(start1 - start2) < 200) {
-                    String existing = sourceItem.getTranslation();
-                    String newTrans = targetItem.getOriginal(); // Target's "original" is the translation text
-
-                    if (existing == null || existing.isEmpty()) {
-                        sourceItem.setTranslation(newTrans);
-                    }
-                    // Assumes 1:1 mapping is sufficient
-                    break;
-                }
-            }
-        }
+    public String pipelineSignature() {
+        return "v" + PIPELINE_VERSION + "/rules=" + filterEngine.getRulesVersion()
+                + "/align=" + mergeToleranceMs + "," + mergeMode + "," + mergeJoinMany;
     }
 
     /**
-     * Rewrite subtitle end times to fill gaps between segments.
-     * Rule: Current Subtitle End Time = Next Subtitle Start Time.
-     * Prevents flickering and ensures continuous playback.
+     * Parse SRT file and filter out garbage lines
      */
-    public void fillTimelineGaps(List<VideoInfoVO.SubtitleItemVO> list) {
-        if (list == null || list.size() < 2) {
-            return;
-        }
-
-        logger.info("Optimizing timeline for " + list.size() + " items...");
-
-        for (int i = 0; i < list.size() - 1; i++) {
-            VideoInfoVO.SubtitleItemVO current = list.get(i);
-            VideoInfoVO.SubtitleItemVO next = list.get(i + 1);
-
-            long NextStartTime = next.getStartTime();
-            long CurrentStartTime = current.getStartTime();
-
-            // Safety Check: Ensure we don't create invalid duration
-            if (NextStartTime > CurrentStartTime) {
-                current.setEndTime(NextStartTime);
-            }
+    public SubtitleTrack parseAndFilter(File file) {
+        try (Stream<VideoInfoVO.SubtitleItemVO> cues = streamAndFilter(file)) {
+            return SubtitleTrack.from(cues.iterator());
         }
     }
 
     /**
-     * Adaptive Strategy: Identify "Auxiliary" subtitles (noise, short fillers)
-     * and merge them into the previous "Main" subtitle.
-     * This reclaims time for the main content and reduces clutter.
+     * Lazily parse and filter an SRT file, one cue at a time.
+     * The returned stream must be closed to release the underlying reader.
      */
-    public List<VideoInfoVO.SubtitleItemVO> mergeAuxiliarySubtitles(List<VideoInfoVO.SubtitleItemVO> list) {
-        if (list == null || list.isEmpty())
-            return new java.util.ArrayList<>();
-
-        List<VideoInfoVO.SubtitleItemVO> result = new java.util.ArrayList<>();
-        VideoInfoVO.SubtitleItemVO lastMain = null;
-
-        for (VideoInfoVO.SubtitleItemVO item : list) {
-            boolean isAux = isAuxiliary(item.getOriginal());
-
-            if (lastMain != null && isAux) {
-                // MERGE STRATEGY:
-                // 1. Extend LastMain time to cover this Aux item
-                lastMain.setEndTime(Math.max(lastMain.getEndTime(), item.getEndTime()));
-
-                // 2. Append text (Optional, maybe with space? or just ignore text if it's pure
-                // noise?)
-                // User said: "Merge 204 as tail tone".
-                // We append it to keep transcript complete but visually cleaner.
-                // lastMain.setOriginal(lastMain.getOriginal() + " " + item.getOriginal());
-
-                // 3. What about Translation?
-                // Usually Aux translation is "..." or empty. We ignore it.
-
-                logger.info("Merged Auxiliary [" + item.getOriginal() + "] into [" + lastMain.getOriginal() + "]");
-                // We do NOT add 'item' to result, effectively "deleting" it as a standalone
-                // entry.
-            } else {
-                // Identify as new Main
-                result.add(item);
-                lastMain = item;
-            }
-        }
-
-        // Re-index
-        for (int i = 0; i < result.size(); i++) {
-            result.get(i).setIndex(i + 1);
+    public Stream<VideoInfoVO.SubtitleItemVO> streamAndFilter(File file) {
+        if (file == null || !file.exists()) {
+            return Stream.empty();
         }
 
-        return result;
-    }
-
-    private boolean isAuxiliary(String text) {
-        if (text == null)
-            return true;
-        String clean = text.trim();
-        // Rule 1: Very short (<= 2 chars)
-        if (clean.length() <= 2)
-            return true;
-
-        // Rule 2: Specific Filler Words (Japanese/Chinese/English)
-        // Adjust regex as needed
-        if (clean.matches("^(?i)(ah|oh|um|uh|ま|あの|え|えっと|嗯|呃|那个)$"))
-            return true;
-
-        return false;
+        CueReader reader = srtParser.open(file);
+        return reader.stream().filter(item -> !isGarbage(item));
     }
 
     /**
-     * Intelligently split long subtitles (> 50 chars) into smaller segments.
-     * Splits based on:
-     * 1. Punctuation (comma, period, question mark) - High Priority
-     * 2. Spaces - Medium Priority
-     * 3. Length - Last Resort
-     * 
-     * Time is redistributed proportionally to text length.
+     * Filter Logic: drop rules of the {@link SubtitleFilterEngine}
+     * (by default numeric noise and sound effects like [laugh], [Music]).
      */
-    public List<VideoInfoVO.SubtitleItemVO> splitLongSubtitles(List<VideoInfoVO.SubtitleItemVO> list) {
-        List<VideoInfoVO.SubtitleItemVO> result = new java.util.ArrayList<>();
-        int MAX_LEN = 50;
-
-        for (VideoInfoVO.SubtitleItemVO item : list) {
-            String text = item.getOriginal();
-            if (text == null || text.length() <= MAX_LEN) {
-                result.add(item); // Keep as is
-                continue;
-            }
-
-            // Needs splitting
-            List<String> segments = splitTextSmartly(text, MAX_LEN);
-
-            // Distribute time EQUALLY
-            long totalDuration = item.getEndTime() - item.getStartTime();
-            long currentStart = item.getStartTime();
-            int segmentCount = segments.size();
-            long durationPerSegment = totalDuration / segmentCount;
-
-            // Split Translation if it exists
-            List<String> transSegments = null;
-            if (item.getTranslation() != null && !item.getTranslation().isEmpty()) {
-                transSegments = splitTranslationByParts(item.getTranslation(), segmentCount);
-            }
-
-            for (int i = 0; i < segments.size(); i++) {
-                String segText = segments.get(i);
-
-                // Calculate end time
-                long segEnd;
-                if (i == segments.size() - 1) {
-                    segEnd = item.getEndTime();
-                } else {
-                    segEnd = currentStart + durationPerSegment;
-                }
-
-                VideoInfoVO.SubtitleItemVO newItem = new VideoInfoVO.SubtitleItemVO(
-                        item.getIndex(),
-                        currentStart,
-                        segEnd,
-                        segText);
-
-                // Handle Translation
-                if (transSegments != null && i < transSegments.size()) {
-                    newItem.setTranslation(transSegments.get(i));
-                } else {
-                    newItem.setTranslation(""); // Should not happen if split correctly
-                }
-
-                result.add(newItem);
-                currentStart = segEnd;
-            }
-        }
-
-        // Re-index
-        for (int i = 0; i < result.size(); i++) {
-            result.get(i).setIndex(i + 1);
-        }
-
-        logger.info("Split subtitles from " + list.size() + " to " + result.size());
-        return result;
-    }
-
-    private List<String> splitTextSmartly(String text, int maxLen) {
-        List<String> parts = new java.util.ArrayList<>();
-
-        while (text.length() > maxLen) {
-            // Find best split point near maxLen (search backwards from maxLen)
-            int splitIndex = -1;
-
-            // Search window: check last 20 chars of the allowance
-            int scanStart = Math.max(0, maxLen - 20);
-            int scanEnd = maxLen;
-
-            // Priority 1: Major Punctuation (。 ? ! ; )
-            // Priority 2: Minor Punctuation ( , ， 、 )
-            // Priority 3: Space
-
-            String snippet = text.substring(scanStart, scanEnd);
-
-            // Regex for sentence stoppers
-            java.util.regex.Matcher m1 = java.util.regex.Pattern.compile("[。？！?!;；]").matcher(snippet);
-            if (m1.find()) { // Take the last one found
-                splitIndex = scanStart + m1.end(); // Split AFTER the punctuation
-            }
-
-            if (splitIndex == -1) {
-                java.util.regex.Matcher m2 = java.util.regex.Pattern.compile("[,，、]").matcher(snippet);
-                if (m2.find()) {
-                    splitIndex = scanStart + m2.end();
-                }
-            }
-
-            if (splitIndex == -1) {
-                int spaceIdx = snippet.lastIndexOf(' ');
-                if (spaceIdx != -1) {
-                    splitIndex = scanStart + spaceIdx + 1;
-                }
-            }
-
-            // Fallback: Hard split at maxLen
-            if (splitIndex == -1) {
-                splitIndex = maxLen;
-            }
-
-            parts.add(text.substring(0, splitIndex).trim());
-            text = text.substring(splitIndex).trim();
-        }
-
-        if (!text.isEmpty()) {
-            parts.add(text);
-        }
-
-        return parts;
+    private boolean isGarbage(VideoInfoVO.SubtitleItemVO item) {
+        return filterEngine.isDropped(item.getOriginal());
     }
 
     /**
-     * Heuristic to split translation text into K roughly equal parts.
-     * Tries to respect punctuation first.
+     * Build the fused processing pipeline for one request.
+     *
+     * @param target translation track used by the align stage
      */
-    private List<String> splitTranslationByParts(String text, int parts) {
-        List<String> result = new java.util.ArrayList<>();
-        if (parts <= 1) {
-            result.add(text);
-            return result;
-        }
-
-        // 1. Try splitting by punctuation
-        // Note: This is naive. Ideally we used the same smart split as original,
-        // but here we are constrained by 'parts' count.
-
-        // Strategy: Naive length division
-        // We divide the string into 'parts' chunks of equal characters.
-        // And then try to snap to the nearest space/punctuation.
-
-        int length = text.length();
-        int chunkLen = length / parts;
-        int currentPos = 0;
-
-        for (int i = 0; i < parts; i++) {
-            if (i == parts - 1) {
-                // Last part takes the rest
-                result.add(text.substring(currentPos).trim());
-            } else {
-                int target = currentPos + chunkLen;
-                // Look for delimiter around target (+/- 5 chars)
-                int split = findBestSplitPoint(text, target, 5);
-                if (split == -1)
-                    split = target; // Fallback to hard cut
-
-                result.add(text.substring(currentPos, split).trim());
-                currentPos = split;
+    public SubtitlePipeline createPipeline(PipelineOptions options, SubtitleTrack target) {
+        List<SubtitleStage> stages = new ArrayList<>();
+        for (String name : options.getStages()) {
+            switch (name) {
+                case PipelineOptions.STAGE_ALIGN:
+                    SubtitleAligner aligner = new SubtitleAligner(
+                            options.getToleranceMs() != null ? options.getToleranceMs() : mergeToleranceMs,
+                            options.getAlignMode() != null ? options.getAlignMode() : mergeMode,
+                            options.getJoinMany() != null ? options.getJoinMany() : mergeJoinMany);
+                    stages.add(new AlignStage(target, aligner));
+                    break;
+                case PipelineOptions.STAGE_AUXILIARY:
+                    stages.add(new AuxiliaryMergeStage(filterEngine));
+                    break;
+                case PipelineOptions.STAGE_SPLIT:
+                    stages.add(new SplitLongStage(options.getMaxLength() != null ? options.getMaxLength()
+                            : SplitLongStage.DEFAULT_MAX_LENGTH));
+                    break;
+                case PipelineOptions.STAGE_GAPS:
+                    stages.add(new FillGapsStage());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown subtitle stage: " + name);
             }
         }
-        return result;
-    }
-
-    private int findBestSplitPoint(String text, int target, int radius) {
-        if (target >= text.length())
-            return text.length();
-
-        // Search outwards from target
-        for (int offset = 0; offset <= radius; offset++) {
-            // Check right
-            int right = target + offset;
-            if (right < text.length() && isDelimiter(text.charAt(right)))
-                return right + 1;
-
-            // Check left
-            int left = target - offset;
-            if (left > 0 && isDelimiter(text.charAt(left)))
-                return left + 1;
-        }
-        return -1;
-    }
-
-    private boolean isDelimiter(char c) {
-        return " ,，.。!！?？;；、".indexOf(c) != -1;
+        return new SubtitlePipeline(stages);
     }
 
     /**
-     * Generate standard SRT string from subtitle list
+     * Generate standard SRT string from a track.
+     * Prefer {@link #render} for anything that ends up in a file or response.
      */
-    public String generateSrtContent(List<VideoInfoVO.SubtitleItemVO> list) {
-        StringBuilder srtBuilder = new StringBuilder();
-        // SRT does not have a header like WEBVTT
-
-        for (VideoInfoVO.SubtitleItemVO item : list) {
-            srtBuilder.append(item.getIndex()).append("\n");
-            srtBuilder.append(formatTime(item.getStartTime()))
-                    .append(" --> ")
-                    .append(formatTime(item.getEndTime()))
-                    .append("\n");
-
-            srtBuilder.append(item.getOriginal()).append("\n");
-
-            if (item.getTranslation() != null && !item.getTranslation().isEmpty()) {
-                srtBuilder.append(item.getTranslation()).append("\n");
-            }
-            srtBuilder.append("\n");
-        }
-        return srtBuilder.toString();
+    public String generateSrtContent(SubtitleTrack track) {
+        return SubtitleRenderer.renderToString(track, SubtitleRenderer.Format.SRT);
     }
 
-    private String formatTime(long totalMs) {
-        long h = totalMs / 3600000;
-        long m = (totalMs % 3600000) / 60000;
-        long s = (totalMs % 60000) / 1000;
-        long ms = totalMs % 1000;
-        // SRT uses comma and dot for seconds, standard SRT is comma 00:00:00,000
-        return String.format("%02d:%02d:%02d,%03d", h, m, s, ms);
+    /**
+     * Stream the track as SRT or WebVTT to the channel (not closed).
+     */
+    public void render(SubtitleTrack track, SubtitleRenderer.Format format, WritableByteChannel channel)
+            throws IOException {
+        new SubtitleRenderer(format).render(track, channel);
     }
 }
@@ -1,14 +1,32 @@
 package com.example.demo.service;
 
+import com.example.demo.model.subtitle.ProcessedVideo;
+import com.example.demo.model.subtitle.SubtitleManifest;
+import com.example.demo.model.subtitle.SubtitleTrack;
 import com.example.demo.model.subtitle.VideoInfoVO;
+import com.example.demo.model.subtitle.VideoMeta;
+import com.example.demo.service.pipeline.PipelineOptions;
+import com.example.demo.service.pipeline.SubtitlePipeline;
+import com.example.demo.utils.SingleFlight;
+import com.example.demo.utils.SubtitleTrackFile;
+import com.example.demo.utils.YouTubeUrls;
 import com.example.demo.utils.YtDlpExtraUtils;
-import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * Main Service for Subtitle Operations.
@@ -26,62 +44,100 @@ public class SubtitleService {
     @Autowired
     private SubtitleFileService subtitleFileService;
 
+    @Autowired
+    private VideoMetaCache videoMetaCache;
+
+    @Autowired
+    private SubtitleDirectoryIndex directoryIndex;
+
+    @Autowired
+    private SubtitleStorageMigration storageMigration;
+
+    @Autowired
+    private SubtitleStorageQuota storageQuota;
+
     @Autowired
     private SubtitleProcessingService processingService;
 
-    public VideoInfoVO processVideo(String url) {
-        VideoInfoVO vo = new VideoInfoVO();
-        try {
-            // 1. Fetch Metadata
-            JsonNode meta = ytDlpUtils.getVideoInfo(url);
-            String videoId = meta.get("id").asText();
+    @Autowired
+    private SubtitleTrackCache trackCache;
 
-            vo.setVideoId(videoId);
-            vo.setTitle(meta.get("title").asText());
-            vo.setDuration(meta.get("duration").asLong());
+    @Autowired
+    private SubtitleManifestService manifestService;
 
-            // 2. Trigger Download (Creates files in temp dir)
-            try {
-                ytDlpUtils.downloadSubtitle(url, meta);
-            } catch (Exception e) {
-                logger.warning("Download warning: " + e.getMessage());
-            }
+    @Value("${erupt.ytdlp.combined-fetch:true}")
+    private boolean combinedFetch = true;
+
+    // Parses the target track while the caller reads the source
+    private final ExecutorService parsePool;
+
+    // Concurrent requests for the same video share one yt-dlp fetch, and
+    // those with the same inputs and options one pipeline run
+    private final SingleFlight<String, ResolvedInputs> fetches = new SingleFlight<>();
+    private final SingleFlight<String, SubtitleTrackCache.Entry> processings = new SingleFlight<>();
 
-            // 3. Find Subtitle Files on Disk
-            SubtitleFileService.SubtitleFilesDTO files = subtitleFileService.findSubtitleFiles(videoId);
+    public SubtitleService(@Value("${erupt.subtitle.parse-threads:4}") int parseThreads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.parsePool = Executors.newFixedThreadPool(Math.max(1, parseThreads), r -> {
+            Thread t = new Thread(r, "subtitle-parse-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
 
-            // 4. Parse & Process
-            List<VideoInfoVO.SubtitleItemVO> sourceList = processingService.parseAndFilter(files.getSource());
-            List<VideoInfoVO.SubtitleItemVO> targetList = processingService.parseAndFilter(files.getTarget());
+    /**
+     * Receives stage changes of processVideo (used for async job progress).
+     */
+    public interface ProgressListener {
+        ProgressListener NONE = (stage, percent) -> {
+        };
 
-            if (files.getSource() != null)
-                logger.info("Using Source: " + files.getSource().getName());
-            if (files.getTarget() != null)
-                logger.info("Using Target: " + files.getTarget().getName());
+        void onProgress(String stage, int percent);
+    }
 
-            // 5. Merge
-            processingService.mergeSubtitles(sourceList, targetList);
+    public ProcessedVideo processVideo(String url) {
+        return processVideo(url, PipelineOptions.defaults(), false);
+    }
 
-            // 6. Generate & Save Result
-            if (!sourceList.isEmpty()) {
-                // STRATEGY 0: Merge Auxiliary/Noise subtitles first
-                List<VideoInfoVO.SubtitleItemVO> mergedList = processingService.mergeAuxiliarySubtitles(sourceList);
+    public ProcessedVideo processVideo(String url, PipelineOptions options) {
+        return processVideo(url, options, false);
+    }
 
-                // STRATEGY 1: Split long subtitles
-                List<VideoInfoVO.SubtitleItemVO> processedList = processingService.splitLongSubtitles(mergedList);
+    /**
+     * @param refresh run yt-dlp even if the stored inputs are still fresh
+     */
+    public ProcessedVideo processVideo(String url, PipelineOptions options, boolean refresh) {
+        return processVideo(url, options, refresh, ProgressListener.NONE);
+    }
 
-                // STRATEGY 2: Extend end times to fill gaps (on the split list)
-                processingService.fillTimelineGaps(processedList);
+    public ProcessedVideo processVideo(String url, PipelineOptions options, boolean refresh,
+            ProgressListener progress) {
+        ProcessedVideo vo = new ProcessedVideo();
+        try {
+            // 1. Resolve the inputs, one fetch per video however many callers.
+            // A refresh does not take the inputs of a fetch that was already running
+            String urlVideoId = YouTubeUrls.extractVideoId(url);
+            String fetchKey = urlVideoId != null ? urlVideoId : url;
+            if (fetches.isInFlight(fetchKey))
+                progress.onProgress("waiting", 5);
+            ResolvedInputs inputs = refresh
+                    ? fetches.executeFresh(fetchKey, () -> resolveInputs(url, urlVideoId, true, progress))
+                    : fetches.execute(fetchKey, () -> resolveInputs(url, urlVideoId, false, progress));
 
-                String mergedContent = processingService.generateSrtContent(processedList);
-                subtitleFileService.saveMergedSrt(videoId, mergedContent);
-                vo.setRawVtt(mergedContent); // Actually SRT now
-                vo.setSubtitles(processedList); // Use processed list for response
-            } else {
-                vo.setSubtitles(new ArrayList<>());
-            }
+            storageQuota.touch(inputs.videoId);
+            vo.setVideoId(inputs.videoId);
+            vo.setTitle(inputs.title);
+            vo.setDuration(inputs.duration);
 
-            vo.setTranslationVtt(null);
+            // 2. Parse & Process, again shared by concurrent callers
+            progress.onProgress("process", 70);
+            SubtitleFileService.SubtitleFilesDTO files = inputs.files;
+            String cacheKey = SubtitleTrackCache.key(inputs.videoId, processingService.pipelineSignature(), options,
+                    files.getSource(), files.getTarget());
+            SubtitleTrackCache.Entry result = processings.execute(cacheKey,
+                    () -> processFiles(inputs.videoId, files, options, cacheKey));
+            vo.setTrack(result.getTrack());
+            vo.setStageTimings(result.getStageTimings());
 
         } catch (Exception e) {
             logger.severe("Error in SubtitleService: " + e.getMessage());
@@ -91,6 +147,176 @@ public class SubtitleService {
         return vo;
     }
 
+    /**
+     * Metadata and subtitle files of a video: from the manifest when the
+     * stored inputs are fresh, otherwise fetched with yt-dlp.
+     */
+    private ResolvedInputs resolveInputs(String url, String urlVideoId, boolean refresh, ProgressListener progress)
+            throws Exception {
+        ResolvedInputs inputs = new ResolvedInputs();
+
+        // 0. Fast path: id from the URL, inputs still fresh -> no yt-dlp at all
+        SubtitleManifest manifest = urlVideoId != null ? manifestService.read(urlVideoId) : null;
+        String staleReason = refresh ? "refresh requested" : manifestService.staleReason(manifest);
+        if (staleReason == null) {
+            logger.info("Inputs of " + urlVideoId + " are fresh, skipping yt-dlp");
+            inputs.videoId = urlVideoId;
+            inputs.title = manifest.getTitle();
+            inputs.duration = manifest.getDuration();
+            inputs.files = subtitleFileService.findSubtitleFiles(urlVideoId);
+            if (manifest.getPipelineVersion() != SubtitleProcessingService.PIPELINE_VERSION) {
+                manifest.setPipelineVersion(SubtitleProcessingService.PIPELINE_VERSION);
+                manifestService.write(manifest, inputs.files, manifest);
+            }
+            return inputs;
+        }
+        if (urlVideoId != null)
+            logger.info("Fetching " + urlVideoId + " with yt-dlp: " + staleReason);
+
+        // 1. Fetch Metadata (cached unless a refresh was requested). Without
+        // cached metadata, one combined yt-dlp run also downloads the subtitles
+        progress.onProgress("metadata", 10);
+        VideoMeta meta = refresh ? null : videoMetaCache.get(url);
+        boolean downloaded = false;
+        if (meta == null) {
+            if (combinedFetch) {
+                meta = ytDlpUtils.fetchInfoAndSubtitles(url, urlVideoId);
+                downloaded = true;
+            } else {
+                meta = ytDlpUtils.getVideoMeta(url);
+            }
+            videoMetaCache.put(url, meta);
+        }
+        String videoId = meta.getVideoId();
+
+        inputs.videoId = videoId;
+        inputs.title = meta.getTitle();
+        inputs.duration = meta.getDuration();
+
+        // 2. Trigger Download (Creates files in temp dir)
+        progress.onProgress("download", 40);
+        if (!downloaded) {
+            try {
+                ytDlpUtils.downloadSubtitle(url, videoId);
+            } catch (Exception e) {
+                logger.warning("Download warning: " + e.getMessage());
+            }
+        }
+
+        // 3. Find Subtitle Files on Disk (yt-dlp wrote them, don't wait for watch events).
+        // Without an id in the URL they were written to the storage root
+        if (urlVideoId == null)
+            storageMigration.migrate(videoId);
+        directoryIndex.rescan(videoId);
+        inputs.files = subtitleFileService.findSubtitleFiles(videoId);
+
+        // 4. Remember what the result is built from
+        SubtitleManifest fresh = new SubtitleManifest();
+        fresh.setVideoId(videoId);
+        fresh.setTitle(inputs.title);
+        fresh.setDuration(inputs.duration);
+        fresh.setPipelineVersion(SubtitleProcessingService.PIPELINE_VERSION);
+        fresh.setFetchedAt(meta.getFetchedAt());
+        manifestService.write(fresh, inputs.files, videoId.equals(urlVideoId) ? manifest : null);
+        return inputs;
+    }
+
+    private SubtitleTrackCache.Entry processFiles(String videoId, SubtitleFileService.SubtitleFilesDTO files,
+            PipelineOptions options, String cacheKey) throws Exception {
+        if (files.getSource() != null)
+            logger.info("Using Source: " + files.getSource().getName());
+        if (files.getTarget() != null)
+            logger.info("Using Target: " + files.getTarget().getName());
+
+        // 1. Unchanged files: reuse the processed track without parsing
+        SubtitleTrackCache.Entry cached = trackCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        // 2. Cold cache: load the binary track written by an earlier run.
+        // Only the default options' track is stored, see 5.
+        SubtitleTrackFile.View stored = options.isDefault() ? subtitleFileService.readTrackFile(videoId, cacheKey)
+                : null;
+        if (stored != null) {
+            try {
+                SubtitleTrackCache.Entry entry = new SubtitleTrackCache.Entry(stored.toTrack(), new ArrayList<>());
+                trackCache.put(cacheKey, entry);
+                return entry;
+            } catch (IOException e) {
+                // e.g. replaced or evicted meanwhile, processed again below
+                logger.warning("Reading track file of " + videoId + " failed: " + e.getMessage());
+            }
+        }
+
+        // 3. Parse the target (translation) track, the align stage looks cues up in it.
+        // With both files present the source is parsed meanwhile on this thread,
+        // into a columnar track rather than one object per cue
+        SubtitleTrack targetTrack;
+        SubtitleTrack sourceTrack = null;
+        if (files.getSource() != null && files.getTarget() != null) {
+            Future<SubtitleTrack> target = parsePool.submit(() -> processingService.parseAndFilter(files.getTarget()));
+            try {
+                sourceTrack = processingService.parseAndFilter(files.getSource());
+            } catch (RuntimeException e) {
+                target.cancel(true);
+                throw e;
+            }
+            try {
+                targetTrack = target.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        } else {
+            targetTrack = processingService.parseAndFilter(files.getTarget());
+        }
+
+        // 4. Stream the source through the fused pipeline:
+        // Merge -> STRATEGY 0: Merge Auxiliary/Noise -> STRATEGY 1: Split long
+        // -> STRATEGY 2: Extend end times to fill gaps (by default)
+        SubtitlePipeline pipeline = processingService.createPipeline(options, targetTrack);
+        SubtitleTrack processedTrack;
+        if (sourceTrack != null) {
+            processedTrack = pipeline.run(sourceTrack.items());
+        } else {
+            try (Stream<VideoInfoVO.SubtitleItemVO> cues = processingService.streamAndFilter(files.getSource())) {
+                processedTrack = pipeline.run(cues.iterator());
+            }
+        }
+        logger.info("Pipeline " + pipeline.getTimings());
+
+        // 5. Generate & Save Result. The stored files are what /subtitle/download
+        // and /subtitle/cues serve, so custom options only go to the cache
+        if (!processedTrack.isEmpty() && options.isDefault()) {
+            subtitleFileService.saveMergedSrt(videoId, processedTrack);
+            subtitleFileService.saveTrackFile(videoId, cacheKey, processedTrack);
+        }
+        SubtitleTrackCache.Entry entry = new SubtitleTrackCache.Entry(processedTrack, pipeline.getTimings());
+        trackCache.put(cacheKey, entry);
+        return entry;
+    }
+
+    private static final class ResolvedInputs {
+        private String videoId;
+        private String title;
+        private long duration;
+        private SubtitleFileService.SubtitleFilesDTO files;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("fetches", fetches.getExecuted());
+        stats.put("fetchesShared", fetches.getShared());
+        stats.put("processings", processings.getExecuted());
+        stats.put("processingsShared", processings.getShared());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parsePool.shutdownNow();
+    }
+
     public java.io.File getSubtitleFile(String videoId, String type) {
         return subtitleFileService.getSubtitleFile(videoId, type);
     }
@@ -0,0 +1,99 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where the files of a video live below youtubePath/sublingo.
+ *
+ * FLAT keeps everything in the sublingo directory itself. SHARDED (the
+ * default) puts a video's files into one of 256 sub directories named by a
+ * hash prefix of its id, e.g. sublingo/3f/, so no directory grows past a
+ * few hundred entries. New files always go to {@link #dirFor(String)};
+ * files written under another layout are moved by
+ * SubtitleStorageMigration and found through SubtitleDirectoryIndex until
+ * then.
+ */
+@Service
+public class SubtitleStorage {
+
+    public enum Layout {
+        FLAT, SHARDED
+    }
+
+    private static final int SHARDS = 256;
+
+    @Value("${erupt.youtube-path}")
+    private String youtubePath;
+
+    @Value("${erupt.subtitle.storage-layout:SHARDED}")
+    private Layout layout = Layout.SHARDED;
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * The sublingo directory. Holds shared files (e.g. video-meta.bin) and,
+     * in the flat layout, all video files.
+     */
+    public File root() {
+        File dir = new File(youtubePath + File.separator + "sublingo");
+        if (!dir.exists())
+            dir.mkdirs();
+        return dir;
+    }
+
+    /**
+     * Directory new files of a video are written to (created on demand).
+     */
+    public File dirFor(String videoId) {
+        if (layout == Layout.FLAT)
+            return root();
+        File dir = new File(root(), shard(videoId));
+        if (!dir.exists())
+            dir.mkdirs();
+        return dir;
+    }
+
+    /**
+     * Where a file of a video is written under the current layout.
+     */
+    public File fileFor(String videoId, String name) {
+        return new File(dirFor(videoId), name);
+    }
+
+    /**
+     * Every directory that can hold video files: the root and, when
+     * sharded, all shard directories (created here).
+     */
+    public List<File> allDirs() {
+        List<File> dirs = new ArrayList<>();
+        File root = root();
+        dirs.add(root);
+        if (layout == Layout.SHARDED) {
+            for (int i = 0; i < SHARDS; i++) {
+                File dir = new File(root, String.format("%02x", i));
+                if (!dir.exists())
+                    dir.mkdirs();
+                dirs.add(dir);
+            }
+        }
+        return dirs;
+    }
+
+    /**
+     * Two hex digits from the id's hash. String.hashCode is specified, so
+     * the shard is stable across JVMs and restarts.
+     */
+    static String shard(String videoId) {
+        int h = videoId.hashCode();
+        h ^= (h >>> 16);
+        h ^= (h >>> 8);
+        return String.format("%02x", h & (SHARDS - 1));
+    }
+}
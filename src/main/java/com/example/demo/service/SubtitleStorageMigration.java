@@ -0,0 +1,178 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Moves video files left in the flat sublingo directory into their shard
+ * directories (see SubtitleStorage), while the app keeps serving.
+ *
+ * Runs once in the background at startup (erupt.subtitle.migrate-on-start)
+ * and for single videos whose files yt-dlp wrote to the root. Each file is
+ * moved under the video's write lock and the directory index is updated
+ * right away, so readers find it at either place. When both places have
+ * the file, the startup run keeps the newer one; for a single video the
+ * root file is what yt-dlp just wrote and always replaces the shard copy.
+ * Files that cannot be moved (e.g. held open on Windows) are left for the
+ * next run.
+ */
+@Service
+public class SubtitleStorageMigration {
+
+    private static final Logger logger = Logger.getLogger(SubtitleStorageMigration.class.getName());
+
+    @Autowired
+    private SubtitleStorage storage;
+
+    @Autowired
+    private SubtitleDirectoryIndex directoryIndex;
+
+    @Autowired
+    private SubtitleFileService subtitleFileService;
+
+    @Value("${erupt.subtitle.migrate-on-start:true}")
+    private boolean migrateOnStart = true;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Thread worker;
+    private final AtomicLong moved = new AtomicLong();
+    private final AtomicLong replaced = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        if (!migrateOnStart || storage.getLayout() == SubtitleStorage.Layout.FLAT)
+            return;
+        worker = new Thread(this::migrateAll, "sublingo-migration");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Move every flat video file into its shard. Returns at once if a run
+     * is already in progress.
+     */
+    public void migrateAll() {
+        if (storage.getLayout() == SubtitleStorage.Layout.FLAT || !running.compareAndSet(false, true))
+            return;
+        long begin = System.currentTimeMillis();
+        long before = moved.get() + replaced.get();
+        try {
+            for (File file : rootFiles(null)) {
+                if (Thread.currentThread().isInterrupted())
+                    return;
+                migrate(file, false);
+            }
+        } finally {
+            running.set(false);
+        }
+        long count = moved.get() + replaced.get() - before;
+        if (count > 0)
+            logger.info("Migrated " + count + " files to the " + storage.getLayout() + " layout in "
+                    + (System.currentTimeMillis() - begin) + " ms");
+    }
+
+    /**
+     * Move the flat files of one video into its shard, replacing what is
+     * there: yt-dlp just downloaded them (to the root, for a URL without
+     * a video id).
+     */
+    public void migrate(String videoId) {
+        if (storage.getLayout() == SubtitleStorage.Layout.FLAT)
+            return;
+        for (File file : rootFiles(videoId)) {
+            migrate(file, true);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("migrationRunning", running.get());
+        stats.put("migrated", moved.get());
+        stats.put("migratedReplaced", replaced.get());
+        stats.put("migrationFailed", failed.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread t = worker;
+        if (t != null)
+            t.interrupt();
+    }
+
+    // fresh: the root file is the newest copy whatever the mtimes say
+    private void migrate(File file, boolean fresh) {
+        String videoId = SubtitleDirectoryIndex.videoIdOf(file.getName());
+        File target = storage.fileFor(videoId, file.getName());
+        ReentrantLock lock = subtitleFileService.writeLock(videoId);
+        lock.lock();
+        try {
+            if (!file.exists())
+                return;
+            if (target.exists() && !fresh && target.lastModified() >= file.lastModified()) {
+                // Written under the new layout after this one
+                Files.delete(file.toPath());
+                replaced.incrementAndGet();
+            } else {
+                boolean replacing = target.exists();
+                move(file.toPath(), target.toPath());
+                directoryIndex.added(target);
+                (replacing ? replaced : moved).incrementAndGet();
+            }
+            directoryIndex.removed(file);
+        } catch (IOException e) {
+            failed.incrementAndGet();
+            logger.fine("Could not migrate " + file.getName() + ": " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Video files in the root; shared files, unfinished downloads and the
+    // info JSON of a running fetch stay
+    private List<File> rootFiles(String videoId) {
+        List<File> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(storage.root().toPath(), Files::isRegularFile)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                String id = SubtitleDirectoryIndex.videoIdOf(name);
+                if (id == null || name.startsWith(VideoMetaCache.LOG_FILE) || name.endsWith(".tmp")
+                        || name.endsWith(".part") || name.endsWith(".ytdl") || name.endsWith(".info.json"))
+                    continue;
+                if (videoId == null || videoId.equals(id))
+                    files.add(path.toFile());
+            }
+        } catch (IOException e) {
+            logger.warning("Listing " + storage.root() + " failed: " + e.getMessage());
+        }
+        return files;
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the sublingo directories within a byte budget
+ * (erupt.subtitle.quota-mb, 0 = unlimited).
+ *
+ * Access time and count are recorded per video ({@link #touch(String)});
+ * a video's newest file mtime also counts as an access, which covers
+ * videos not seen since startup. Once usage exceeds the budget, a scheduled run deletes
+ * the files of the coldest videos (by erupt.subtitle.quota-policy, LRU or
+ * LFU) until usage is back under the low watermark: audio of all videos
+ * first, then subtitle files. A run deletes at most
+ * erupt.subtitle.quota-max-deletes files and picks up where it stopped on
+ * the next one.
+ *
+ * Videos accessed within erupt.subtitle.quota-min-idle-minutes and videos
+ * pinned by a running stream ({@link #pin(String)}) are never touched.
+ * Unfinished downloads (.part) and temp files are not counted. Needs the
+ * directory index; without a working WatchService nothing is evicted.
+ */
+@Service
+public class SubtitleStorageQuota {
+
+    private static final Logger logger = Logger.getLogger(SubtitleStorageQuota.class.getName());
+
+    public enum Policy {
+        LRU, LFU
+    }
+
+    /**
+     * Keeps a video's files from eviction until closed.
+     */
+    public interface Pin extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Pin NO_PIN = () -> {
+    };
+
+    private static final class Access {
+        volatile long lastAccess;
+        final AtomicInteger hits = new AtomicInteger();
+    }
+
+    private static final class Candidate {
+        final String videoId;
+        final List<File> files = new ArrayList<>();
+        long lastAccess;
+        int hits;
+
+        Candidate(String videoId) {
+            this.videoId = videoId;
+        }
+    }
+
+    @Autowired
+    private SubtitleDirectoryIndex directoryIndex;
+
+    @Autowired
+    private SubtitleFileService subtitleFileService;
+
+    @Autowired
+    private SubtitleTrackCache trackCache;
+
+    @Value("${erupt.subtitle.quota-mb:0}")
+    private long quotaMb = 0;
+
+    // Evict down to this share of the budget, so not every run has to evict
+    @Value("${erupt.subtitle.quota-low-percent:90}")
+    private int lowPercent = 90;
+
+    @Value("${erupt.subtitle.quota-policy:LRU}")
+    private Policy policy = Policy.LRU;
+
+    @Value("${erupt.subtitle.quota-min-idle-minutes:10}")
+    private long minIdleMinutes = 10;
+
+    @Value("${erupt.subtitle.quota-max-deletes:200}")
+    private int maxDeletes = 200;
+
+    private final ConcurrentHashMap<String, Access> access = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicInteger> pins = new ConcurrentHashMap<>();
+    private final Object runLock = new Object();
+
+    private volatile long usedBytes;
+    private final AtomicLong evictedFiles = new AtomicLong();
+    private final AtomicLong evictedBytes = new AtomicLong();
+    private final AtomicLong skippedBusy = new AtomicLong();
+
+    /**
+     * Record a use of a video's files. Ids come from request parameters:
+     * only videos with files in the index are recorded, and nothing is
+     * without a quota.
+     */
+    public void touch(String videoId) {
+        if (videoId == null || quotaMb <= 0 || !directoryIndex.videoIds().contains(videoId))
+            return;
+        Access a = access.computeIfAbsent(videoId, k -> new Access());
+        a.lastAccess = System.currentTimeMillis();
+        a.hits.incrementAndGet();
+    }
+
+    /**
+     * Record a use and keep the video's files until the pin is closed,
+     * e.g. while streaming one of them.
+     */
+    public Pin pin(String videoId) {
+        if (videoId == null || quotaMb <= 0)
+            return NO_PIN;
+        // Recorded even before the video has files (e.g. a download about to
+        // start); pins are removed on close, so they do not pile up
+        touch(videoId);
+        pins.computeIfAbsent(videoId, k -> new AtomicInteger()).incrementAndGet();
+        return () -> pins.computeIfPresent(videoId, (k, count) -> count.decrementAndGet() <= 0 ? null : count);
+    }
+
+    /**
+     * Evict until usage is under the low watermark (or the run's delete
+     * limit is reached).
+     */
+    @Scheduled(fixedDelayString = "${erupt.subtitle.quota-check-ms:60000}", initialDelay = 60000)
+    public void enforce() {
+        if (quotaMb <= 0 || !directoryIndex.isReady())
+            return;
+        synchronized (runLock) {
+            long quota = quotaMb * 1024 * 1024;
+            List<Candidate> audio = new ArrayList<>();
+            List<Candidate> subtitles = new ArrayList<>();
+            long used = scan(audio, subtitles);
+            usedBytes = used;
+            if (used <= quota)
+                return;
+
+            long low = quota / 100 * lowPercent;
+            long before = used;
+            int deletes = 0;
+            for (List<Candidate> tier : List.of(audio, subtitles)) {
+                tier.sort(order());
+                for (Candidate c : tier) {
+                    if (used <= low || deletes >= maxDeletes)
+                        break;
+                    long freed = evict(c, subtitles == tier);
+                    if (freed < 0)
+                        continue;
+                    used -= freed;
+                    deletes += c.files.size();
+                }
+            }
+            usedBytes = used;
+            logger.info("Storage over quota (" + mb(before) + " of " + quotaMb + " MB), evicted " + deletes
+                    + " files, now " + mb(used) + " MB");
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("quotaMb", quotaMb);
+        stats.put("quotaPolicy", policy);
+        stats.put("usedMb", mb(usedBytes));
+        stats.put("trackedVideos", access.size());
+        stats.put("pinnedVideos", pins.size());
+        stats.put("evictedFiles", evictedFiles.get());
+        stats.put("evictedMb", mb(evictedBytes.get()));
+        stats.put("evictionSkippedBusy", skippedBusy.get());
+        return stats;
+    }
+
+    /**
+     * Group the indexed files into audio and subtitle candidates per video.
+     *
+     * @return bytes in use
+     */
+    private long scan(List<Candidate> audio, List<Candidate> subtitles) {
+        long used = 0;
+        for (String videoId : directoryIndex.videoIds()) {
+            Candidate audioFiles = new Candidate(videoId);
+            Candidate subtitleFiles = new Candidate(videoId);
+            long newest = 0;
+            for (File file : directoryIndex.files(videoId).values()) {
+                String name = file.getName();
+                if (!counted(name))
+                    continue;
+                long length = file.length();
+                used += length;
+                newest = Math.max(newest, file.lastModified());
+                Candidate c = isAudio(videoId, name) ? audioFiles : subtitleFiles;
+                c.files.add(file);
+            }
+            Access a = access.get(videoId);
+            for (Candidate c : List.of(audioFiles, subtitleFiles)) {
+                // A file just written (e.g. a finished download) counts as used
+                c.lastAccess = a != null ? Math.max(a.lastAccess, newest) : newest;
+                c.hits = a != null ? a.hits.get() : 0;
+            }
+            if (!audioFiles.files.isEmpty())
+                audio.add(audioFiles);
+            if (!subtitleFiles.files.isEmpty())
+                subtitles.add(subtitleFiles);
+        }
+        // Forget videos that are gone
+        access.keySet().retainAll(directoryIndex.videoIds());
+        return used;
+    }
+
+    private Comparator<Candidate> order() {
+        Comparator<Candidate> lru = Comparator.comparingLong(c -> c.lastAccess);
+        return policy == Policy.LFU ? Comparator.<Candidate>comparingInt(c -> c.hits).thenComparing(lru) : lru;
+    }
+
+    /**
+     * Delete the candidate's files under the video's write lock.
+     *
+     * @return bytes freed, -1 if the video is in use
+     */
+    private long evict(Candidate c, boolean subtitles) {
+        long idleSince = System.currentTimeMillis() - minIdleMinutes * 60_000;
+        Access a = access.get(c.videoId);
+        if (pins.containsKey(c.videoId) || c.lastAccess > idleSince || a != null && a.lastAccess > idleSince) {
+            skippedBusy.incrementAndGet();
+            return -1;
+        }
+        long freed = 0;
+        ReentrantLock lock = subtitleFileService.writeLock(c.videoId);
+        lock.lock();
+        try {
+            for (File file : c.files) {
+                // Pinned while waiting for the lock
+                if (pins.containsKey(c.videoId))
+                    break;
+                long length = file.length();
+                try {
+                    if (Files.deleteIfExists(file.toPath())) {
+                        freed += length;
+                        evictedFiles.incrementAndGet();
+                    }
+                    directoryIndex.removed(file);
+                } catch (IOException e) {
+                    // e.g. held open on Windows, next run
+                    logger.fine("Could not evict " + file.getName() + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (subtitles)
+            trackCache.invalidate(c.videoId);
+        evictedBytes.addAndGet(freed);
+        return freed;
+    }
+
+    private static boolean counted(String name) {
+        return !name.startsWith(VideoMetaCache.LOG_FILE) && !name.endsWith(".part") && !name.endsWith(".tmp")
+                && !name.endsWith(".ytdl");
+    }
+
+    private static boolean isAudio(String videoId, String name) {
+        for (String ext : SubtitleFileService.AUDIO_FORMATS) {
+            if (name.equals(videoId + "." + ext))
+                return true;
+        }
+        return false;
+    }
+
+    private static long mb(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+}
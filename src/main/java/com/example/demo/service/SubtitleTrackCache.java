@@ -0,0 +1,149 @@
+package com.example.demo.service;
+
+import com.example.demo.model.subtitle.StageTiming;
+import com.example.demo.model.subtitle.SubtitleTrack;
+import com.example.demo.service.pipeline.PipelineOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * In-memory cache of processed subtitle tracks.
+ *
+ * An entry is keyed by videoId, the pipeline version and filter rules, the
+ * pipeline options and the identity (path, mtime, size) of the source and
+ * target SRT files, so a changed or re-downloaded file simply misses. Entries are evicted least recently used
+ * once the estimated size exceeds erupt.subtitle.cache-max-mb.
+ *
+ * Cached tracks are shared between requests and must be treated as read-only.
+ */
+@Service
+public class SubtitleTrackCache {
+
+    private static final Logger logger = Logger.getLogger(SubtitleTrackCache.class.getName());
+
+    public static class Entry {
+        private final SubtitleTrack track;
+        private final List<StageTiming> stageTimings;
+        private final long bytes;
+
+        public Entry(SubtitleTrack track, List<StageTiming> stageTimings) {
+            this.track = track;
+            this.stageTimings = stageTimings;
+            this.bytes = track.estimatedBytes();
+        }
+
+        public SubtitleTrack getTrack() {
+            return track;
+        }
+
+        public List<StageTiming> getStageTimings() {
+            return stageTimings;
+        }
+    }
+
+    @Value("${erupt.subtitle.cache-max-mb:64}")
+    private long maxMegabytes = 64;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param pipeline see SubtitleProcessingService#pipelineSignature()
+     */
+    public static String key(String videoId, String pipeline, PipelineOptions options, File source, File target) {
+        return videoId + "|" + pipeline + "|" + options.signature() + "|" + fileIdentity(source) + "|"
+                + fileIdentity(target);
+    }
+
+    private static String fileIdentity(File file) {
+        if (file == null || !file.exists())
+            return "-";
+        return file.getAbsolutePath() + "@" + file.lastModified() + ":" + file.length();
+    }
+
+    public Entry get(String key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return entry;
+    }
+
+    public void put(String key, Entry entry) {
+        long maxBytes = maxMegabytes * 1024 * 1024;
+        if (entry.bytes > maxBytes)
+            return; // would evict everything else
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null)
+                totalBytes -= previous.bytes;
+            totalBytes += entry.bytes;
+
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Entry> eldest = it.next();
+                if (eldest.getKey().equals(key))
+                    continue;
+                totalBytes -= eldest.getValue().bytes;
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Drop all entries of one video, or everything when videoId is null.
+     *
+     * @return number of removed entries
+     */
+    public int invalidate(String videoId) {
+        int removed = 0;
+        synchronized (entries) {
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Entry> e = it.next();
+                if (videoId == null || e.getKey().startsWith(videoId + "|")) {
+                    totalBytes -= e.getValue().bytes;
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+        logger.info("Invalidated " + removed + " cached subtitle tracks" + (videoId != null ? " for " + videoId : ""));
+        return removed;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", totalBytes);
+        }
+        stats.put("maxBytes", maxMegabytes * 1024 * 1024);
+        long h = hits.get();
+        long m = misses.get();
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRatio", h + m == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+}
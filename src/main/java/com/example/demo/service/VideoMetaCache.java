@@ -0,0 +1,253 @@
+package com.example.demo.service;
+
+import com.example.demo.model.subtitle.VideoMeta;
+import com.example.demo.utils.YouTubeUrls;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Cache of trimmed yt-dlp metadata (id, title, duration), so a known video
+ * does not need a --dump-json run.
+ *
+ * Lookups are by normalized URL: a recognisable YouTube URL collapses to its
+ * video id, any other URL is remembered as an alias of the id yt-dlp
+ * returned for it. Entries expire after erupt.ytdlp.meta-ttl-hours.
+ *
+ * Entries are appended to video-meta.bin in the subtitle directory and
+ * loaded again on startup; the log is compacted when it holds mostly
+ * expired or overwritten records.
+ */
+@Service
+public class VideoMetaCache {
+
+    private static final Logger logger = Logger.getLogger(VideoMetaCache.class.getName());
+
+    public static final String LOG_FILE = "video-meta.bin";
+
+    private static final int MAGIC = 0x564D4554; // "VMET"
+    private static final int VERSION = 1;
+    private static final int MAX_TITLE = 1000;
+
+    @Autowired
+    private SubtitleFileService subtitleFileService;
+
+    @Value("${erupt.ytdlp.meta-ttl-hours:24}")
+    private long ttlHours = 24;
+
+    private final ConcurrentHashMap<String, VideoMeta> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> aliases = new ConcurrentHashMap<>(); // url key -> id
+    private final Object logLock = new Object();
+    private int logRecords;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    /**
+     * The video id for YouTube URLs, otherwise the URL without fragment and
+     * trailing slash.
+     */
+    public static String urlKey(String url) {
+        String videoId = YouTubeUrls.extractVideoId(url);
+        if (videoId != null)
+            return videoId;
+        String key = url.trim();
+        int hash = key.indexOf('#');
+        if (hash >= 0)
+            key = key.substring(0, hash);
+        while (key.endsWith("/"))
+            key = key.substring(0, key.length() - 1);
+        return key;
+    }
+
+    public VideoMeta get(String url) {
+        String key = urlKey(url);
+        String videoId = aliases.getOrDefault(key, key);
+        VideoMeta meta = byId.get(videoId);
+        if (meta != null && isExpired(meta, System.currentTimeMillis())) {
+            byId.remove(videoId, meta);
+            expired.incrementAndGet();
+            meta = null;
+        }
+        if (meta != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return meta;
+    }
+
+    public void put(String url, VideoMeta meta) {
+        String key = url != null ? urlKey(url) : meta.getVideoId();
+        byId.put(meta.getVideoId(), meta);
+        if (!key.equals(meta.getVideoId()))
+            aliases.put(key, meta.getVideoId());
+        synchronized (logLock) {
+            File file = getLogFile();
+            boolean fresh = !file.exists() || file.length() == 0;
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file, true)))) {
+                if (fresh)
+                    writeHeader(out);
+                writeRecord(out, key, meta);
+                logRecords++;
+            } catch (IOException e) {
+                logger.warning("Failed to persist metadata of " + meta.getVideoId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public File getLogFile() {
+        return new File(subtitleFileService.getSubtitleDir(), LOG_FILE);
+    }
+
+    @PostConstruct
+    public void load() {
+        File file = getLogFile();
+        if (!file.exists())
+            return;
+        long now = System.currentTimeMillis();
+        int records = 0;
+        boolean damaged = false;
+        synchronized (logLock) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    logger.warning("Replacing metadata cache with unknown format: " + file.getName());
+                    damaged = true;
+                } else {
+                    while (true) {
+                        // Only the end of the file between records is a clean end,
+                        // an EOF inside one is a torn record
+                        in.mark(1);
+                        if (in.read() < 0)
+                            break;
+                        in.reset();
+                        String key = in.readUTF();
+                        VideoMeta meta = new VideoMeta(in.readUTF(), in.readUTF(), in.readLong(), in.readLong());
+                        records++;
+                        if (isExpired(meta, now))
+                            continue;
+                        byId.put(meta.getVideoId(), meta);
+                        if (!key.equals(meta.getVideoId()))
+                            aliases.put(key, meta.getVideoId());
+                    }
+                }
+            } catch (IOException e) {
+                // A torn last record after a crash; keep what was read
+                logger.warning("Metadata cache truncated after " + records + " records: " + e);
+                damaged = true;
+            }
+            logRecords = records;
+            // Rewrite a damaged log right away: records appended after the
+            // garbage would be unreadable on every later start
+            if (damaged || records > 2 * byId.size() + 64)
+                compact();
+        }
+        logger.info("Loaded " + byId.size() + " cached video metadata entries");
+    }
+
+    /**
+     * Drop expired entries from memory. The log is compacted once it has
+     * grown well beyond the live entries.
+     */
+    @Scheduled(fixedDelay = 600000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        int before = byId.size();
+        byId.values().removeIf(meta -> isExpired(meta, now));
+        aliases.values().removeIf(id -> !byId.containsKey(id));
+        expired.addAndGet(before - byId.size());
+        synchronized (logLock) {
+            if (logRecords > 2 * byId.size() + 64)
+                compact();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", byId.size());
+        stats.put("aliases", aliases.size());
+        synchronized (logLock) {
+            stats.put("logRecords", logRecords);
+        }
+        stats.put("ttlHours", ttlHours);
+        long h = hits.get();
+        long m = misses.get();
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRatio", h + m == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("expired", expired.get());
+        return stats;
+    }
+
+    // Caller holds logLock
+    private void compact() {
+        File file = getLogFile();
+        File tmp = new File(file.getPath() + ".tmp");
+        Map<String, String> keys = new LinkedHashMap<>();
+        for (String id : byId.keySet()) {
+            keys.put(id, id);
+        }
+        aliases.forEach((key, id) -> keys.put(key, id));
+        int written = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            writeHeader(out);
+            for (Map.Entry<String, String> e : keys.entrySet()) {
+                VideoMeta meta = byId.get(e.getValue());
+                if (meta == null)
+                    continue;
+                writeRecord(out, e.getKey(), meta);
+                written++;
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to compact metadata cache: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            logger.fine("Compacted metadata cache from " + logRecords + " to " + written + " records");
+            logRecords = written;
+        } catch (IOException e) {
+            logger.warning("Failed to replace metadata cache: " + e.getMessage());
+            tmp.delete();
+        }
+    }
+
+    private boolean isExpired(VideoMeta meta, long now) {
+        return ttlHours > 0 && now - meta.getFetchedAt() > ttlHours * 3600_000L;
+    }
+
+    private static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    private static void writeRecord(DataOutputStream out, String key, VideoMeta meta) throws IOException {
+        String title = meta.getTitle() != null ? meta.getTitle() : "";
+        out.writeUTF(key);
+        out.writeUTF(meta.getVideoId());
+        out.writeUTF(title.length() > MAX_TITLE ? title.substring(0, MAX_TITLE) : title);
+        out.writeLong(meta.getDuration());
+        out.writeLong(meta.getFetchedAt());
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Central gate for every yt-dlp (and other external tool) process.
+ *
+ * At most erupt.ytdlp.max-concurrent processes run at once. Waiting work is
+ * served by priority (interactive metadata first, then subtitles, then
+ * audio) and FIFO within a priority. Each class has a queue-time deadline,
+ * after which the caller gives up with a TimeoutException, and a run-time
+ * deadline, after which the process is killed.
+ */
+@Service
+public class YtDlpScheduler {
+
+    private static final Logger logger = Logger.getLogger(YtDlpScheduler.class.getName());
+
+    public enum Priority {
+        METADATA, SUBTITLE, AUDIO
+    }
+
+    /**
+     * Consumes the started process (its output, exit code). Runs on the
+     * caller's thread while holding a slot.
+     */
+    public interface ProcessHandler<T> {
+        T handle(Process process) throws Exception;
+    }
+
+    private static final long KILL_GRACE_MS = 2000;
+
+    private final int maxConcurrent;
+    private final Map<Priority, long[]> deadlines = new EnumMap<>(Priority.class); // {queueMs, runMs}
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+    private final PriorityQueue<Ticket> waiting = new PriorityQueue<>();
+    private int running;
+    private long sequence;
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ytdlp-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Metrics
+    private final Map<Priority, AtomicLong> started = new EnumMap<>(Priority.class);
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong queueTimeouts = new AtomicLong();
+    private final AtomicLong killed = new AtomicLong();
+    private final AtomicLong totalQueueMs = new AtomicLong();
+
+    public YtDlpScheduler(@Value("${erupt.ytdlp.max-concurrent:3}") int maxConcurrent,
+            @Value("${erupt.ytdlp.metadata-queue-ms:15000}") long metadataQueueMs,
+            @Value("${erupt.ytdlp.metadata-run-ms:30000}") long metadataRunMs,
+            @Value("${erupt.ytdlp.subtitle-queue-ms:60000}") long subtitleQueueMs,
+            @Value("${erupt.ytdlp.subtitle-run-ms:60000}") long subtitleRunMs,
+            @Value("${erupt.ytdlp.audio-queue-ms:300000}") long audioQueueMs,
+            @Value("${erupt.ytdlp.audio-run-ms:600000}") long audioRunMs) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        deadlines.put(Priority.METADATA, new long[] { metadataQueueMs, metadataRunMs });
+        deadlines.put(Priority.SUBTITLE, new long[] { subtitleQueueMs, subtitleRunMs });
+        deadlines.put(Priority.AUDIO, new long[] { audioQueueMs, audioRunMs });
+        for (Priority p : Priority.values()) {
+            started.put(p, new AtomicLong());
+        }
+    }
+
+    /**
+     * Run a process with the default deadlines of its priority.
+     */
+    public <T> T run(Priority priority, ProcessBuilder builder, ProcessHandler<T> handler) throws Exception {
+        long[] d = deadlines.get(priority);
+        return run(priority, builder, handler, d[0], d[1]);
+    }
+
+    /**
+     * Wait (at most queueMs) for a slot, start the process and hand it to the
+     * handler. The process is killed when it runs longer than runMs; the call
+     * then fails with a TimeoutException even if the handler returned.
+     */
+    public <T> T run(Priority priority, ProcessBuilder builder, ProcessHandler<T> handler, long queueMs, long runMs)
+            throws Exception {
+        long queuedAt = System.currentTimeMillis();
+        acquire(priority, queuedAt + queueMs);
+        totalQueueMs.addAndGet(System.currentTimeMillis() - queuedAt);
+        started.get(priority).incrementAndGet();
+
+        Process process = null;
+        AtomicBoolean overran = new AtomicBoolean();
+        ScheduledFuture<?> timer = null;
+        try {
+            process = builder.start();
+            Process p = process;
+            timer = watchdog.schedule(() -> {
+                overran.set(true);
+                kill(p, priority);
+            }, runMs, TimeUnit.MILLISECONDS);
+
+            T result = handler.handle(process);
+            if (overran.get())
+                throw new TimeoutException(priority + " process exceeded " + runMs + " ms");
+            completed.incrementAndGet();
+            return result;
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            if (overran.get() && !(e instanceof TimeoutException))
+                throw new TimeoutException(priority + " process exceeded " + runMs + " ms");
+            throw e;
+        } finally {
+            if (timer != null)
+                timer.cancel(false);
+            if (process != null && process.isAlive())
+                process.destroyForcibly();
+            release();
+        }
+    }
+
+    /**
+     * Default run deadline of a priority, for callers that wait on the
+     * process themselves.
+     */
+    public long getRunMs(Priority priority) {
+        return deadlines.get(priority)[1];
+    }
+
+    private void acquire(Priority priority, long deadline) throws InterruptedException, TimeoutException {
+        lock.lock();
+        try {
+            Ticket ticket = new Ticket(priority, sequence++);
+            waiting.add(ticket);
+            try {
+                while (running >= maxConcurrent || waiting.peek() != ticket) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        queueTimeouts.incrementAndGet();
+                        throw new TimeoutException(priority + " work waited more than its queue deadline");
+                    }
+                    slotFreed.await(remaining, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException | TimeoutException e) {
+                waiting.remove(ticket);
+                slotFreed.signalAll(); // the next ticket may be the head now
+                throw e;
+            }
+            waiting.poll();
+            running++;
+            if (running < maxConcurrent)
+                slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            running--;
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void kill(Process process, Priority priority) {
+        if (!process.isAlive())
+            return;
+        killed.incrementAndGet();
+        logger.warning("Killing overrunning " + priority + " process " + process.pid());
+        process.destroy();
+        watchdog.schedule(() -> {
+            if (process.isAlive())
+                process.destroyForcibly();
+        }, KILL_GRACE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Map<Priority, Integer> depth = new EnumMap<>(Priority.class);
+        for (Priority p : Priority.values()) {
+            depth.put(p, 0);
+        }
+        lock.lock();
+        try {
+            stats.put("running", running);
+            for (Ticket t : waiting) {
+                depth.merge(t.priority, 1, Integer::sum);
+            }
+        } finally {
+            lock.unlock();
+        }
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("queued", depth);
+        Map<Priority, Long> starts = new EnumMap<>(Priority.class);
+        long total = 0;
+        for (Priority p : Priority.values()) {
+            starts.put(p, started.get(p).get());
+            total += starts.get(p);
+        }
+        stats.put("started", starts);
+        stats.put("completed", completed.get());
+        stats.put("failed", failed.get());
+        stats.put("queueTimeouts", queueTimeouts.get());
+        stats.put("killed", killed.get());
+        stats.put("avgQueueMs", total == 0 ? 0 : totalQueueMs.get() / total);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    private static final class Ticket implements Comparable<Ticket> {
+        private final Priority priority;
+        private final long seq;
+
+        Ticket(Priority priority, long seq) {
+            this.priority = priority;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(Ticket o) {
+            int c = Integer.compare(priority.ordinal(), o.priority.ordinal());
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.demo.service.pipeline;
+
+import com.example.demo.model.subtitle.SubtitleTrack;
+import com.example.demo.model.subtitle.VideoInfoVO;
+import com.example.demo.service.SubtitleAligner;
+
+/**
+ * Attaches the matching target (translation) text to every source cue.
+ *
+ * Start-time matching streams: each cue is matched against the target track
+ * with a {@link SubtitleAligner.Cursor} as it passes. Overlap and many-to-one
+ * matching need to see every source cue first, so in those modes this stage
+ * collects the cues, aligns them at {@link #finish} and only then forwards
+ * them.
+ */
+public class AlignStage implements SubtitleStage {
+
+    private final SubtitleTrack target;
+    private final SubtitleAligner aligner;
+    private final SubtitleAligner.Cursor cursor;
+    private SubtitleTrack buffered;
+
+    public AlignStage(SubtitleTrack target, SubtitleAligner aligner) {
+        this.target = target;
+        this.aligner = aligner;
+        boolean streaming = aligner.getMode() == SubtitleAligner.Mode.START && !aligner.isJoinMany();
+        this.cursor = streaming ? aligner.cursor(target) : null;
+        this.buffered = streaming ? null : new SubtitleTrack();
+    }
+
+    @Override
+    public String name() {
+        return "align";
+    }
+
+    @Override
+    public void accept(VideoInfoVO.SubtitleItemVO cue, CueSink next) {
+        if (target.isEmpty()) {
+            next.accept(cue);
+            return;
+        }
+
+        if (cursor == null) {
+            int row = buffered.add(cue.getIndex(), cue.getStartTime(), cue.getEndTime(), cue.getOriginal());
+            buffered.setTranslation(row, cue.getTranslation());
+            return;
+        }
+
+        int match = cursor.match(cue.getStartTime());
+        if (match != -1 && (cue.getTranslation() == null || cue.getTranslation().isEmpty())) {
+            // Target's "original" is the translation text
+            cue.setTranslation(target.getOriginal(match));
+        }
+        next.accept(cue);
+    }
+
+    @Override
+    public void finish(CueSink next) {
+        if (buffered == null || buffered.isEmpty())
+            return;
+
+        aligner.align(buffered, target);
+        for (VideoInfoVO.SubtitleItemVO cue : buffered.toItems()) {
+            next.accept(cue);
+        }
+        buffered = null;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.demo.service.pipeline;
+
+import com.example.demo.model.subtitle.VideoInfoVO;
+import com.example.demo.service.SubtitleFilterEngine;
+
+import java.util.logging.Logger;
+
+/**
+ * Adaptive Strategy: Identify "Auxiliary" subtitles (noise, short fillers)
+ * and merge them into the previous "Main" subtitle.
+ * This reclaims time for the main content and reduces clutter.
+ *
+ * Holds back the last main cue until the next main cue arrives.
+ */
+public class AuxiliaryMergeStage implements SubtitleStage {
+
+    private static final Logger logger = Logger.getLogger(AuxiliaryMergeStage.class.getName());
+
+    private final SubtitleFilterEngine filterEngine;
+    private VideoInfoVO.SubtitleItemVO lastMain;
+
+    public AuxiliaryMergeStage(SubtitleFilterEngine filterEngine) {
+        this.filterEngine = filterEngine;
+    }
+
+    @Override
+    public String name() {
+        return "auxiliary";
+    }
+
+    @Override
+    public void accept(VideoInfoVO.SubtitleItemVO cue, CueSink next) {
+        String text = cue.getOriginal();
+        boolean isAux = text == null || filterEngine.isAuxiliary(text, 0, text.length());
+
+        if (lastMain != null && isAux) {
+            // MERGE STRATEGY:
+            // 1. Extend LastMain time to cover this Aux item
+            lastMain.setEndTime(Math.max(lastMain.getEndTime(), cue.getEndTime()));
+
+            // 2. The aux text and its translation ("..." or empty) are dropped to
+            // keep the transcript visually cleaner.
+            logger.fine("Merged Auxiliary [" + text + "] into [" + lastMain.getOriginal() + "]");
+            return;
+        }
+
+        // Identify as new Main
+        if (lastMain != null) {
+            next.accept(lastMain);
+        }
+        lastMain = cue;
+    }
+
+    @Override
+    public void finish(CueSink next) {
+        if (lastMain != null) {
+            next.accept(lastMain);
+            lastMain = null;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.demo.service.pipeline;
+
+import com.example.demo.model.subtitle.VideoInfoVO;
+
+/**
+ * Downstream end of a pipeline stage.
+ */
+public interface CueSink {
+
+    void accept(VideoInfoVO.SubtitleItemVO cue);
+}
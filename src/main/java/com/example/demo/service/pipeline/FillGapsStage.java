@@ -0,0 +1,40 @@
+package com.example.demo.service.pipeline;
+
+import com.example.demo.model.subtitle.VideoInfoVO;
+
+/**
+ * Rewrite subtitle end times to fill gaps between segments.
+ * Rule: Current Subtitle End Time = Next Subtitle Start Time.
+ * Prevents flickering and ensures continuous playback.
+ *
+ * Holds back one cue until its successor is known.
+ */
+public class FillGapsStage implements SubtitleStage {
+
+    private VideoInfoVO.SubtitleItemVO pending;
+
+    @Override
+    public String name() {
+        return "gaps";
+    }
+
+    @Override
+    public void accept(VideoInfoVO.SubtitleItemVO cue, CueSink next) {
+        if (pending != null) {
+            // Safety Check: Ensure we don't create invalid duration
+            if (cue.getStartTime() > pending.getStartTime()) {
+                pending.setEndTime(cue.getStartTime());
+            }
+            next.accept(pending);
+        }
+        pending = cue;
+    }
+
+    @Override
+    public void finish(CueSink next) {
+        if (pending != null) {
+            next.accept(pending);
+            pending = null;
+        }
+    }
+}
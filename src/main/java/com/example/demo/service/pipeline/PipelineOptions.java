@@ -0,0 +1,116 @@
+package com.example.demo.service.pipeline;
+
+import com.example.demo.service.SubtitleAligner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-request configuration of the subtitle pipeline: which stages run in
+ * which order, and their parameters. Unset values fall back to the defaults
+ * (the strategy order the service has always used).
+ */
+public class PipelineOptions {
+
+    public static final String STAGE_ALIGN = "align";
+    public static final String STAGE_AUXILIARY = "auxiliary";
+    public static final String STAGE_SPLIT = "split";
+    public static final String STAGE_GAPS = "gaps";
+
+    public static final List<String> DEFAULT_STAGES = List.of(STAGE_ALIGN, STAGE_AUXILIARY, STAGE_SPLIT, STAGE_GAPS);
+
+    private List<String> stages = DEFAULT_STAGES;
+    private Integer maxLength;
+    private Long toleranceMs;
+    private SubtitleAligner.Mode alignMode;
+    private Boolean joinMany;
+
+    public static PipelineOptions defaults() {
+        return new PipelineOptions();
+    }
+
+    /**
+     * Parse a comma separated stage list, e.g. "align,split,gaps".
+     * Null or blank keeps the default order.
+     */
+    public PipelineOptions withStages(String stageList) {
+        if (stageList == null || stageList.isBlank())
+            return this;
+
+        List<String> parsed = new ArrayList<>();
+        for (String stage : Arrays.asList(stageList.split(","))) {
+            String name = stage.trim().toLowerCase();
+            if (name.isEmpty())
+                continue;
+            if (!DEFAULT_STAGES.contains(name))
+                throw new IllegalArgumentException("Unknown subtitle stage: " + name + ", expected one of " + DEFAULT_STAGES);
+            parsed.add(name);
+        }
+        this.stages = parsed;
+        return this;
+    }
+
+    /**
+     * Identifies the output produced by these options (cache keys, manifests).
+     */
+    public String signature() {
+        return String.join(",", stages) + ";max=" + maxLength + ";tol=" + toleranceMs + ";mode=" + alignMode
+                + ";many=" + joinMany;
+    }
+
+    public boolean isDefault() {
+        return stages.equals(DEFAULT_STAGES) && maxLength == null && toleranceMs == null && alignMode == null
+                && joinMany == null;
+    }
+
+    public List<String> getStages() {
+        return stages;
+    }
+
+    public Integer getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * @throws IllegalArgumentException if below 1 (nothing could be split off)
+     */
+    public PipelineOptions setMaxLength(Integer maxLength) {
+        if (maxLength != null && maxLength < 1)
+            throw new IllegalArgumentException("maxLen must be at least 1, got " + maxLength);
+        this.maxLength = maxLength;
+        return this;
+    }
+
+    public Long getToleranceMs() {
+        return toleranceMs;
+    }
+
+    /**
+     * @throws IllegalArgumentException if negative
+     */
+    public PipelineOptions setToleranceMs(Long toleranceMs) {
+        if (toleranceMs != null && toleranceMs < 0)
+            throw new IllegalArgumentException("tolerance must not be negative, got " + toleranceMs);
+        this.toleranceMs = toleranceMs;
+        return this;
+    }
+
+    public SubtitleAligner.Mode getAlignMode() {
+        return alignMode;
+    }
+
+    public PipelineOptions setAlignMode(SubtitleAligner.Mode alignMode) {
+        this.alignMode = alignMode;
+        return this;
+    }
+
+    public Boolean getJoinMany() {
+        return joinMany;
+    }
+
+    public PipelineOptions setJoinMany(Boolean joinMany) {
+        this.joinMany = joinMany;
+        return this;
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.demo.service.pipeline;
+
+import com.example.demo.model.subtitle.VideoInfoVO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Intelligently split long subtitles (> maxLength chars) into smaller segments.
+ * Splits based on:
+ * 1. Punctuation (comma, period, question mark) - High Priority
+ * 2. Spaces - Medium Priority
+ * 3. Length - Last Resort
+ *
+ * Time is distributed equally over the segments.
+ */
+public class SplitLongStage implements SubtitleStage {
+
+    public static final int DEFAULT_MAX_LENGTH = 50;
+
+    private static final Pattern MAJOR_PUNCTUATION = Pattern.compile("[。？！?!;；]");
+    private static final Pattern MINOR_PUNCTUATION = Pattern.compile("[,，、]");
+
+    private final int maxLength;
+
+    public SplitLongStage(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    public String name() {
+        return "split";
+    }
+
+    @Override
+    public void accept(VideoInfoVO.SubtitleItemVO cue, CueSink next) {
+        String text = cue.getOriginal();
+        if (text == null || text.length() <= maxLength) {
+            next.accept(cue); // Keep as is
+            return;
+        }
+
+        // Needs splitting
+        List<String> segments = splitTextSmartly(text, maxLength);
+
+        // Distribute time EQUALLY
+        long totalDuration = cue.getEndTime() - cue.getStartTime();
+        long currentStart = cue.getStartTime();
+        int segmentCount = segments.size();
+        long durationPerSegment = totalDuration / segmentCount;
+
+        // Split Translation if it exists
+        List<String> transSegments = null;
+        if (cue.getTranslation() != null && !cue.getTranslation().isEmpty()) {
+            transSegments = splitTranslationByParts(cue.getTranslation(), segmentCount);
+        }
+
+        for (int i = 0; i < segments.size(); i++) {
+            // Calculate end time
+            long segEnd;
+            if (i == segments.size() - 1) {
+                segEnd = cue.getEndTime();
+            } else {
+                segEnd = currentStart + durationPerSegment;
+            }
+
+            VideoInfoVO.SubtitleItemVO segment = new VideoInfoVO.SubtitleItemVO(cue.getIndex(), currentStart, segEnd,
+                    segments.get(i));
+
+            // Handle Translation
+            if (transSegments != null && i < transSegments.size()) {
+                segment.setTranslation(transSegments.get(i));
+            } else {
+                segment.setTranslation(""); // Should not happen if split correctly
+            }
+
+            next.accept(segment);
+            currentStart = segEnd;
+        }
+    }
+
+    private static List<String> splitTextSmartly(String text, int maxLen) {
+        List<String> parts = new ArrayList<>();
+
+        while (text.length() > maxLen) {
+            // Find best split point near maxLen (search backwards from maxLen)
+            int splitIndex = -1;
+
+            // Search window: check last 20 chars of the allowance
+            int scanStart = Math.max(0, maxLen - 20);
+            int scanEnd = maxLen;
+
+            // Priority 1: Major Punctuation (。 ? ! ; )
+            // Priority 2: Minor Punctuation ( , ， 、 )
+            // Priority 3: Space
+
+            String snippet = text.substring(scanStart, scanEnd);
+
+            // Regex for sentence stoppers
+            Matcher m1 = MAJOR_PUNCTUATION.matcher(snippet);
+            if (m1.find()) { // Take the last one found
+                splitIndex = scanStart + m1.end(); // Split AFTER the punctuation
+            }
+
+            if (splitIndex == -1) {
+                Matcher m2 = MINOR_PUNCTUATION.matcher(snippet);
+                if (m2.find()) {
+                    splitIndex = scanStart + m2.end();
+                }
+            }
+
+            if (splitIndex == -1) {
+                int spaceIdx = snippet.lastIndexOf(' ');
+                if (spaceIdx != -1) {
+                    splitIndex = scanStart + spaceIdx + 1;
+                }
+            }
+
+            // Fallback: Hard split at maxLen
+            if (splitIndex == -1) {
+                splitIndex = maxLen;
+            }
+
+            parts.add(text.substring(0, splitIndex).trim());
+            text = text.substring(splitIndex).trim();
+        }
+
+        if (!text.isEmpty()) {
+            parts.add(text);
+        }
+
+        return parts;
+    }
+
+    /**
+     * Heuristic to split translation text into K roughly equal parts.
+     * Tries to respect punctuation first.
+     */
+    private static List<String> splitTranslationByParts(String text, int parts) {
+        List<String> result = new ArrayList<>();
+        if (parts <= 1) {
+            result.add(text);
+            return result;
+        }
+
+        // 1. Try splitting by punctuation
+        // Note: This is naive. Ideally we used the same smart split as original,
+        // but here we are constrained by 'parts' count.
+
+        // Strategy: Naive length division
+        // We divide the string into 'parts' chunks of equal characters.
+        // And then try to snap to the nearest space/punctuation.
+
+        int length = text.length();
+        int chunkLen = length / parts;
+        int currentPos = 0;
+
+        for (int i = 0; i < parts; i++) {
+            if (i == parts - 1) {
+                // Last part takes the rest
+                result.add(text.substring(currentPos).trim());
+            } else {
+                int target = currentPos + chunkLen;
+                // Look for delimiter around target (+/- 5 chars)
+                int split = findBestSplitPoint(text, target, 5);
+                if (split == -1)
+                    split = target; // Fallback to hard cut
+
+                result.add(text.substring(currentPos, split).trim());
+                currentPos = split;
+            }
+        }
+        return result;
+    }
+
+    private static int findBestSplitPoint(String text, int target, int radius) {
+        if (target >= text.length())
+            return text.length();
+
+        // Search outwards from target
+        for (int offset = 0; offset <= radius; offset++) {
+            // Check right
+            int right = target + offset;
+            if (right < text.length() && isDelimiter(text.charAt(right)))
+                return right + 1;
+
+            // Check left
+            int left = target - offset;
+            if (left > 0 && isDelimiter(text.charAt(left)))
+                return left + 1;
+        }
+        return -1;
+    }
+
+    private static boolean isDelimiter(char c) {
+        return " ,，.。!！?？;；、".indexOf(c) != -1;
+    }
+}
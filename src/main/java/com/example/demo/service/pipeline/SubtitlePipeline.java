@@ -0,0 +1,141 @@
+package com.example.demo.service.pipeline;
+
+import com.example.demo.model.subtitle.StageTiming;
+import com.example.demo.model.subtitle.SubtitleTrack;
+import com.example.demo.model.subtitle.VideoInfoVO;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Chain of {@link SubtitleStage}s fused into one streaming pass.
+ *
+ * Each cue read from the input travels through all stages before the next
+ * one is read, so no intermediate list is built between stages. The output
+ * is renumbered 1..n.
+ *
+ * A pipeline instance is single use (stages keep per-run state).
+ */
+public class SubtitlePipeline {
+
+    private final List<SubtitleStage> stages;
+    private final List<StageTiming> timings = new ArrayList<>();
+
+    public SubtitlePipeline(List<SubtitleStage> stages) {
+        this.stages = new ArrayList<>(stages);
+    }
+
+    /**
+     * Run all cues through the stages into a new track.
+     */
+    public SubtitleTrack run(Iterator<VideoInfoVO.SubtitleItemVO> cues) {
+        SubtitleTrack track = new SubtitleTrack();
+        run(cues, cue -> {
+            int row = track.add(cue.getIndex(), cue.getStartTime(), cue.getEndTime(), cue.getOriginal());
+            if (cue.getTranslation() != null) {
+                track.setTranslation(row, cue.getTranslation());
+            }
+        });
+        return track;
+    }
+
+    /**
+     * Run all cues through the stages into the given sink.
+     */
+    public void run(Iterator<VideoInfoVO.SubtitleItemVO> cues, CueSink output) {
+        if (!timings.isEmpty())
+            throw new IllegalStateException("Pipeline already ran");
+
+        // Build the chain back to front, last node renumbers
+        int[] index = { 0 };
+        CueSink tail = cue -> {
+            cue.setIndex(++index[0]);
+            output.accept(cue);
+        };
+        StageNode[] nodes = new StageNode[stages.size()];
+        CueSink next = tail;
+        for (int i = stages.size() - 1; i >= 0; i--) {
+            nodes[i] = new StageNode(stages.get(i), next);
+            next = nodes[i];
+        }
+
+        while (cues.hasNext()) {
+            next.accept(cues.next());
+        }
+        // Flush front to back: what a stage releases still passes the later ones
+        for (StageNode node : nodes) {
+            node.finish();
+        }
+
+        for (StageNode node : nodes) {
+            timings.add(new StageTiming(node.stage.name(), node.cuesIn, node.cuesOut(), node.exclusiveNanos / 1000));
+        }
+    }
+
+    public List<SubtitleStage> getStages() {
+        return stages;
+    }
+
+    /**
+     * Timings of the last run, in stage order.
+     */
+    public List<StageTiming> getTimings() {
+        return timings;
+    }
+
+    /**
+     * Wraps a stage to count cues and measure its own (exclusive) time.
+     */
+    private static final class StageNode implements CueSink {
+        private final SubtitleStage stage;
+        private final CueSink next;
+        private final StageNode nextNode;
+        private int cuesIn;
+        private int cuesOut;
+        private long inclusiveNanos;
+        private long exclusiveNanos;
+
+        private final CueSink counter;
+
+        StageNode(SubtitleStage stage, CueSink next) {
+            this.stage = stage;
+            this.next = next;
+            this.nextNode = next instanceof StageNode ? (StageNode) next : null;
+            this.counter = cue -> {
+                cuesOut++;
+                this.next.accept(cue);
+            };
+        }
+
+        @Override
+        public void accept(VideoInfoVO.SubtitleItemVO cue) {
+            cuesIn++;
+            long downstreamBefore = downstreamNanos();
+            long begin = System.nanoTime();
+            stage.accept(cue, counter);
+            record(begin, downstreamBefore);
+        }
+
+        void finish() {
+            long downstreamBefore = downstreamNanos();
+            long begin = System.nanoTime();
+            stage.finish(counter);
+            record(begin, downstreamBefore);
+        }
+
+        private void record(long begin, long downstreamBefore) {
+            long elapsed = System.nanoTime() - begin;
+            inclusiveNanos += elapsed;
+            exclusiveNanos += elapsed - (downstreamNanos() - downstreamBefore);
+        }
+
+        private long downstreamNanos() {
+            return nextNode != null ? nextNode.inclusiveNanos : 0;
+        }
+
+        int cuesOut() {
+            return cuesOut;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.demo.service.pipeline;
+
+import com.example.demo.model.subtitle.VideoInfoVO;
+
+/**
+ * One step of the subtitle processing pipeline.
+ *
+ * Stages are push based: every cue is handed to {@link #accept} together with
+ * the next stage, and the stage forwards zero, one or several cues. A stage
+ * may hold back cues (e.g. to look at the next one) as long as it forwards
+ * them at the latest in {@link #finish}.
+ *
+ * Cues are mutable and owned by the pipeline, stages may modify them in place.
+ */
+public interface SubtitleStage {
+
+    /**
+     * Short name, used in stage lists and timings
+     */
+    String name();
+
+    void accept(VideoInfoVO.SubtitleItemVO cue, CueSink next);
+
+    /**
+     * Called once after the last cue: forward anything still held back.
+     */
+    default void finish(CueSink next) {
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.demo.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Binary on-disk format for waveform peaks of an audio track (*.peaks.bin).
+ *
+ * Layout (big-endian):
+ *
+ * <pre>
+ * header     magic "SLPK", version, sampleRate, levelCount,
+ *            position/length of the key
+ * levels     per level: samplesPerPeak, peakCount, data position
+ * data       per level and peak: min and max as signed bytes
+ * key        UTF-8 identity of the audio the peaks were computed from
+ * </pre>
+ *
+ * Level 0 has the finest resolution, each following level merges two peaks
+ * of the one before, down to a few hundred peaks for the whole track. A
+ * waveform of any zoom is thus a slice of one level, read with one
+ * positional read.
+ */
+public final class AudioPeaksFile {
+
+    public static final int MAGIC = 0x534C504B; // "SLPK"
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8 + 8;
+    private static final int LEVEL_SIZE = 4 + 4 + 8;
+    // No further levels once one has at most this many peaks
+    private static final int MIN_PEAKS = 512;
+
+    private AudioPeaksFile() {
+    }
+
+    /**
+     * Collects min/max per samplesPerPeak samples from 16-bit little-endian
+     * mono PCM, fed in chunks of any size.
+     */
+    public static final class Builder {
+        private final int sampleRate;
+        private final int samplesPerPeak;
+        private byte[] peaks = new byte[64 * 1024];
+        private int count;
+        private int inPeak;
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+        private int low = -1; // first byte of a sample split across chunks
+
+        public Builder(int sampleRate, int samplesPerPeak) {
+            this.sampleRate = sampleRate;
+            this.samplesPerPeak = samplesPerPeak;
+        }
+
+        public void accept(byte[] pcm, int n) {
+            int i = 0;
+            if (low >= 0 && n > 0) {
+                sample((short) (low | pcm[0] << 8));
+                low = -1;
+                i = 1;
+            }
+            for (; i + 1 < n; i += 2) {
+                sample((short) (pcm[i] & 0xFF | pcm[i + 1] << 8));
+            }
+            if (i < n)
+                low = pcm[i] & 0xFF;
+        }
+
+        public int getPeakCount() {
+            return count + (inPeak > 0 ? 1 : 0);
+        }
+
+        /**
+         * Write all levels into an empty channel, which is left open.
+         */
+        public void write(String key, FileChannel channel) throws IOException {
+            if (inPeak > 0)
+                flushPeak();
+            AudioPeaksFile.write(sampleRate, samplesPerPeak, Arrays.copyOf(peaks, 2 * count), key, channel);
+        }
+
+        private void sample(short value) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            if (++inPeak == samplesPerPeak)
+                flushPeak();
+        }
+
+        private void flushPeak() {
+            if (2 * count + 2 > peaks.length)
+                peaks = Arrays.copyOf(peaks, peaks.length * 2);
+            // 16 to 8 bit, plenty for drawing
+            peaks[2 * count] = (byte) (min >> 8);
+            peaks[2 * count + 1] = (byte) (max >> 8);
+            count++;
+            inPeak = 0;
+            min = Integer.MAX_VALUE;
+            max = Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Write the given finest level and the coarser ones derived from it.
+     *
+     * @param peaks min/max pairs of level 0
+     */
+    public static void write(int sampleRate, int samplesPerPeak, byte[] peaks, String key, FileChannel channel)
+            throws IOException {
+        int levelCount = 1;
+        for (int n = peaks.length / 2; n > MIN_PEAKS; n = (n + 1) / 2) {
+            levelCount++;
+        }
+        byte[] keyBytes = key != null ? key.getBytes(StandardCharsets.UTF_8) : new byte[0];
+
+        ByteBuffer table = ByteBuffer.allocate(HEADER_SIZE + LEVEL_SIZE * levelCount);
+        table.position(HEADER_SIZE);
+        long pos = table.capacity();
+        channel.position(pos);
+        byte[] level = peaks;
+        for (int l = 0; l < levelCount; l++) {
+            if (l > 0)
+                level = merge(level);
+            table.putInt(samplesPerPeak << l).putInt(level.length / 2).putLong(pos);
+            ByteBuffer data = ByteBuffer.wrap(level);
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            pos += level.length;
+        }
+        ByteBuffer keyBuf = ByteBuffer.wrap(keyBytes);
+        while (keyBuf.hasRemaining()) {
+            channel.write(keyBuf);
+        }
+
+        // Header last, once all positions are known
+        table.position(0);
+        table.putInt(MAGIC).putInt(VERSION).putInt(sampleRate).putInt(levelCount);
+        table.putLong(pos).putLong(keyBytes.length);
+        table.position(0);
+        while (table.hasRemaining()) {
+            channel.write(table, table.position());
+        }
+    }
+
+    /**
+     * Read the header, level table and key. Slices are read from the file
+     * on demand, it is not kept open (nor memory-mapped, which on Windows
+     * would keep it from being replaced or deleted).
+     */
+    public static Header readHeader(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE)
+                throw new IOException("Not a peaks file: " + path);
+            ByteBuffer header = read(channel, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC)
+                throw new IOException("Bad magic in peaks file");
+            if (header.getInt(4) != VERSION)
+                throw new IOException("Unsupported peaks file version " + header.getInt(4));
+            int levelCount = header.getInt(12);
+            long keyPos = header.getLong(16);
+            long keyLen = header.getLong(24);
+            if (levelCount < 1 || HEADER_SIZE + (long) LEVEL_SIZE * levelCount > size || keyPos + keyLen > size)
+                throw new IOException("Truncated peaks file");
+            ByteBuffer levels = read(channel, HEADER_SIZE, LEVEL_SIZE * levelCount);
+            ByteBuffer key = read(channel, keyPos, (int) keyLen);
+            return new Header(path, size, header.getInt(8), levels,
+                    new String(key.array(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Header of a peaks file: sample rate, levels and key.
+     */
+    public static final class Header {
+        private final Path path;
+        private final long size;
+        private final int sampleRate;
+        private final int levelCount;
+        private final int[] samplesPerPeak;
+        private final int[] peakCount;
+        private final long[] dataPos;
+        private final String key;
+
+        private Header(Path path, long size, int sampleRate, ByteBuffer levels, String key) {
+            this.path = path;
+            this.size = size;
+            this.sampleRate = sampleRate;
+            this.levelCount = levels.capacity() / LEVEL_SIZE;
+            this.samplesPerPeak = new int[levelCount];
+            this.peakCount = new int[levelCount];
+            this.dataPos = new long[levelCount];
+            for (int l = 0; l < levelCount; l++) {
+                samplesPerPeak[l] = levels.getInt(LEVEL_SIZE * l);
+                peakCount[l] = levels.getInt(LEVEL_SIZE * l + 4);
+                dataPos[l] = levels.getLong(LEVEL_SIZE * l + 8);
+            }
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public int getLevelCount() {
+            return levelCount;
+        }
+
+        public int getSamplesPerPeak(int level) {
+            return samplesPerPeak[level];
+        }
+
+        public int getPeakCount(int level) {
+            return peakCount[level];
+        }
+
+        /**
+         * The finest level with at most peaksPerSecond peaks per second
+         * (the coarsest if none is that coarse).
+         */
+        public int levelFor(double peaksPerSecond) {
+            for (int l = 0; l < levelCount; l++) {
+                if ((double) sampleRate / samplesPerPeak[l] <= peaksPerSecond)
+                    return l;
+            }
+            return levelCount - 1;
+        }
+
+        /**
+         * Peak index at timeMs on the level.
+         */
+        public int peakAt(int level, long timeMs) {
+            long peak = timeMs * sampleRate / 1000 / samplesPerPeak[level];
+            return (int) Math.max(0, Math.min(peakCount[level], peak));
+        }
+
+        /**
+         * Min/max pairs of peaks [from, to) of the level, read from the file.
+         */
+        public byte[] slice(int level, int from, int to) throws IOException {
+            from = Math.max(0, from);
+            to = Math.min(peakCount[level], to);
+            if (from >= to)
+                return new byte[0];
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() != size)
+                    throw new IOException("Peaks file replaced since its header was read");
+                return read(channel, dataPos[level] + 2L * from, 2 * (to - from)).array();
+            }
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0)
+                throw new IOException("Truncated peaks file");
+        }
+        return buf;
+    }
+
+    // Next coarser level: min/max over each two peaks
+    private static byte[] merge(byte[] level) {
+        int n = level.length / 2;
+        byte[] merged = new byte[2 * ((n + 1) / 2)];
+        for (int i = 0; i < n; i += 2) {
+            byte min = level[2 * i];
+            byte max = level[2 * i + 1];
+            if (i + 1 < n) {
+                min = (byte) Math.min(min, level[2 * i + 2]);
+                max = (byte) Math.max(max, level[2 * i + 3]);
+            }
+            merged[i] = min;
+            merged[i + 1] = max;
+        }
+        return merged;
+    }
+}
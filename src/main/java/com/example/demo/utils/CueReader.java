@@ -0,0 +1,61 @@
+package com.example.demo.utils;
+
+import com.example.demo.model.subtitle.VideoInfoVO;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Pull-style reader over the cues of a subtitle file.
+ * Cues are decoded one at a time as the caller advances, so consumers can
+ * filter / merge / render a track without holding the whole list in memory.
+ *
+ * Readers must be closed (try-with-resources, or close the stream returned by
+ * {@link #stream()}).
+ */
+public interface CueReader extends Iterator<VideoInfoVO.SubtitleItemVO>, Closeable {
+
+    @Override
+    void close();
+
+    /**
+     * Lazy, ordered stream over the remaining cues. Closing the stream closes
+     * this reader.
+     */
+    default Stream<VideoInfoVO.SubtitleItemVO> stream() {
+        Spliterator<VideoInfoVO.SubtitleItemVO> spliterator = Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    /**
+     * Adapt an already materialized list (e.g. from a fallback parser).
+     */
+    static CueReader of(Iterable<VideoInfoVO.SubtitleItemVO> items) {
+        Iterator<VideoInfoVO.SubtitleItemVO> it = items.iterator();
+        return new CueReader() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public VideoInfoVO.SubtitleItemVO next() {
+                return it.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    static CueReader empty() {
+        return of(Collections.emptyList());
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.demo.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Crash-safe file replacement: content goes to a temp file next to the
+ * target, which is forced to disk and then renamed over the target, so
+ * readers and a restart after a crash see either the old or the new file,
+ * never a partial one.
+ *
+ * Each writer forces its own temp file in its own thread, so concurrent
+ * writes flush their data in parallel. Only the renames and directory syncs
+ * are group-committed: writers hand the forced temp file to one flusher
+ * thread and wait, the flusher renames everything that queued up meanwhile
+ * (lingering batchMs for more) and syncs each parent directory once per
+ * batch. Syncing a directory is best-effort, it is not possible on every
+ * platform (e.g. Windows).
+ *
+ * Temp files are named {target}.{instance}-{n}.tmp, unique per writer
+ * instance, so leftovers of a crashed run never collide with new writes;
+ * {@link #sweep(Path)} removes them at startup.
+ */
+public final class GroupCommitWriter implements AutoCloseable {
+
+    /**
+     * Writes the file content. The channel is empty and stays open.
+     */
+    public interface Content {
+        void writeTo(FileChannel channel) throws IOException;
+    }
+
+    private static final class Pending {
+        final Path target;
+        final Path tmp;
+        final FileChannel channel;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Pending(Path target, Path tmp, FileChannel channel) {
+            this.target = target;
+            this.tmp = tmp;
+            this.channel = channel;
+        }
+    }
+
+    // Queued by close(): the flusher commits what is ahead of it and stops
+    private static final Pending STOP = new Pending(null, null, null);
+
+    private final boolean fsync;
+    private final long batchMs;
+    private final String instance = Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+    private final long startedAt = System.currentTimeMillis();
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * @param fsync   false to only write aside and rename, without forcing
+     *                anything to disk
+     * @param batchMs how long the flusher waits for more renames once one
+     *                arrived (0 = commit whatever is queued right away)
+     */
+    public GroupCommitWriter(String name, boolean fsync, long batchMs) {
+        this.fsync = fsync;
+        this.batchMs = batchMs;
+        if (fsync) {
+            flusher = new Thread(this::flush, name);
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Replace the target with the written content. Returns once the new
+     * file is in place (and durable, with fsync on).
+     */
+    public void write(Path target, Content content) throws IOException {
+        Path tmp = target.resolveSibling(
+                target.getFileName() + "." + instance + "-" + sequence.incrementAndGet() + ".tmp");
+        FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        Pending pending = new Pending(target, tmp, channel);
+        try {
+            content.writeTo(channel);
+            if (fsync)
+                channel.force(false);
+            channel.close();
+        } catch (IOException | RuntimeException e) {
+            discard(pending);
+            throw e;
+        }
+        writes.incrementAndGet();
+        if (flusher == null) {
+            commit(List.of(pending));
+        } else {
+            queue.add(pending);
+            // Closed while queueing: the flusher may be gone, commit here
+            if (closed && queue.remove(pending))
+                commit(List.of(pending));
+        }
+        try {
+            pending.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + target.getFileName());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("fsync", fsync);
+        stats.put("writes", writes.get());
+        stats.put("writeBatches", batches.get());
+        stats.put("writeFailures", failures.get());
+        stats.put("writesQueued", queue.size());
+        return stats;
+    }
+
+    /**
+     * Delete temp files (*.tmp) in dir and its subdirectories that are older
+     * than this writer, left behind by a crash.
+     *
+     * @return the number of files deleted
+     */
+    public int sweep(Path dir) {
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(dir, 2)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!file.getFileName().toString().endsWith(".tmp") || !Files.isRegularFile(file))
+                    continue;
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < startedAt && Files.deleteIfExists(file))
+                        deleted++;
+                } catch (IOException e) {
+                    // e.g. held open on Windows, next start
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // Best effort, the leftovers do not get in the way of new writes
+        }
+        return deleted;
+    }
+
+    /**
+     * Commit what is queued and stop the flusher.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (flusher != null) {
+            // Not interrupted: that would abort a running directory sync and drop the batch
+            queue.add(STOP);
+            try {
+                flusher.join(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void flush() {
+        List<Pending> batch = new ArrayList<>();
+        boolean stop = false;
+        while (!stop) {
+            try {
+                Pending first = queue.take();
+                if (first == STOP)
+                    break;
+                batch.add(first);
+                if (batchMs > 0) {
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchMs);
+                    long left;
+                    while ((left = deadline - System.nanoTime()) > 0) {
+                        Pending next = queue.poll(left, TimeUnit.NANOSECONDS);
+                        if (next == null)
+                            break;
+                        if (next == STOP) {
+                            stop = true;
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                stop = true;
+            }
+            if (!stop) {
+                queue.drainTo(batch);
+                stop = batch.remove(STOP);
+            }
+            commit(batch);
+            batch.clear();
+        }
+        // Writes that raced close()
+        queue.drainTo(batch);
+        batch.remove(STOP);
+        commit(batch);
+    }
+
+    // Rename the forced temp files, then make the renames durable
+    private void commit(List<Pending> batch) {
+        if (batch.isEmpty())
+            return;
+        batches.incrementAndGet();
+        Set<Path> dirs = new LinkedHashSet<>();
+        List<Pending> renamed = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            try {
+                move(pending.tmp, pending.target);
+                dirs.add(pending.target.toAbsolutePath().getParent());
+                renamed.add(pending);
+            } catch (IOException e) {
+                discard(pending);
+                pending.done.completeExceptionally(e);
+            }
+        }
+        // Once per directory
+        if (fsync) {
+            for (Path dir : dirs) {
+                syncDirectory(dir);
+            }
+        }
+        for (Pending pending : renamed) {
+            pending.done.complete(null);
+        }
+    }
+
+    private void discard(Pending pending) {
+        failures.incrementAndGet();
+        try {
+            pending.channel.close();
+        } catch (IOException e) {
+            // deleting it anyway
+        }
+        try {
+            Files.deleteIfExists(pending.tmp);
+        } catch (IOException e) {
+            // left for the next cleanup
+        }
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened or forced on every platform
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.demo.utils;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Waits for an external process with a hard wall-clock deadline.
+ *
+ * stdout and stderr are pumped line by line on background threads, so the
+ * caller never blocks in a read: a hung process is killed at the deadline
+ * and the call fails with a TimeoutException. A consumer exception is
+ * rethrown once the process has exited.
+ */
+public final class ProcessRunner {
+
+    /**
+     * Receives one output line at a time on a pump thread.
+     */
+    public interface LineConsumer {
+        LineConsumer DISCARD = line -> {
+        };
+
+        void accept(String line) throws Exception;
+    }
+
+    /**
+     * Reads the raw output (e.g. binary media) on a pump thread.
+     */
+    public interface StreamConsumer {
+        void accept(InputStream stream) throws Exception;
+    }
+
+    // Pipes can stay open after exit when the process left children behind
+    private static final long DRAIN_GRACE_MS = 2000;
+
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+    private static final ExecutorService pumps = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "process-pump-" + threadNumber.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private ProcessRunner() {
+    }
+
+    /**
+     * @return the exit code
+     */
+    public static int run(Process process, LineConsumer stdout, LineConsumer stderr, long timeoutMs)
+            throws Exception {
+        return runStreaming(process, stream -> pump(stream, stdout), stderr, timeoutMs);
+    }
+
+    /**
+     * Like {@link #run}, with stdout handed over as a stream.
+     *
+     * @return the exit code
+     */
+    public static int runStreaming(Process process, StreamConsumer stdout, LineConsumer stderr, long timeoutMs)
+            throws Exception {
+        Future<?> out = pumps.submit(() -> {
+            try (InputStream stream = process.getInputStream()) {
+                stdout.accept(stream);
+            }
+            return null;
+        });
+        Future<?> err = pumps.submit(() -> {
+            pump(process.getErrorStream(), stderr);
+            return null;
+        });
+        try {
+            if (!process.waitFor(timeoutMs, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                throw new TimeoutException("Process " + process.pid() + " exceeded " + timeoutMs + " ms");
+            }
+            drain(out);
+            drain(err);
+            return process.exitValue();
+        } finally {
+            out.cancel(true);
+            err.cancel(true);
+        }
+    }
+
+    private static void pump(InputStream stream, LineConsumer consumer) throws Exception {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                consumer.accept(line);
+            }
+        }
+    }
+
+    private static void drain(Future<?> pump) throws Exception {
+        try {
+            pump.get(DRAIN_GRACE_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Output still open after exit; what was read is all we get
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+                throw (Exception) cause;
+            throw e;
+        }
+    }
+}
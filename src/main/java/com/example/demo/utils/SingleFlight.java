@@ -0,0 +1,102 @@
+package com.example.demo.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent calls with the same key: the first caller runs the
+ * work, callers arriving while it is in flight wait for and share its result
+ * (or exception). Nothing is cached once the call has finished.
+ *
+ * {@link #executeFresh} is for callers that must not get a result computed
+ * before they asked: they only share calls that were started fresh, and
+ * otherwise wait for the call in flight and then run their own.
+ */
+public final class SingleFlight<K, V> {
+
+    private static final class Call<V> extends CompletableFuture<V> {
+        final boolean fresh;
+
+        Call(boolean fresh) {
+            this.fresh = fresh;
+        }
+    }
+
+    private final ConcurrentHashMap<K, Call<V>> calls = new ConcurrentHashMap<>();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+
+    public V execute(K key, Callable<V> work) throws Exception {
+        Call<V> mine = new Call<>(false);
+        Call<V> existing = calls.putIfAbsent(key, mine);
+        if (existing != null) {
+            shared.incrementAndGet();
+            return await(existing);
+        }
+        return run(key, mine, work);
+    }
+
+    /**
+     * Like {@link #execute}, but never shares a call that was started by
+     * {@link #execute}: waits for it to finish and then runs the work.
+     */
+    public V executeFresh(K key, Callable<V> work) throws Exception {
+        while (true) {
+            Call<V> mine = new Call<>(true);
+            Call<V> existing = calls.putIfAbsent(key, mine);
+            if (existing == null)
+                return run(key, mine, work);
+            if (existing.fresh) {
+                shared.incrementAndGet();
+                return await(existing);
+            }
+            try {
+                existing.get();
+            } catch (ExecutionException e) {
+                // Not ours, run again
+            }
+        }
+    }
+
+    private V run(K key, Call<V> mine, Callable<V> work) throws Exception {
+        executed.incrementAndGet();
+        try {
+            V value = work.call();
+            mine.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, mine);
+        }
+    }
+
+    public boolean isInFlight(K key) {
+        return calls.containsKey(key);
+    }
+
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    public long getShared() {
+        return shared.get();
+    }
+
+    private V await(CompletableFuture<V> call) throws Exception {
+        try {
+            return call.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+                throw (Exception) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.example.demo.utils;
+
+import com.example.demo.model.subtitle.VideoInfoVO;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+/**
+ * Byte-level SRT cue reader working directly on the UTF-8 bytes of the file.
+ *
+ * Follows the same state machine and timestamp rules as the line parser in
+ * {@link SrtParser} (index -> time -> text, an empty line ends the cue) and
+ * yields the same cues, but:
+ * - timestamps ("HH:MM:SS,mmm") are decoded straight into millis
+ * - tags ("<i>", "<font ...>") are stripped from the cue's bytes
+ * - only one String is created per cue (the final text)
+ *
+ * The file is read into one heap buffer and closed right away; cues are
+ * decoded on demand, so besides the raw bytes only the current cue is held.
+ * The file is not memory-mapped: on Windows a mapped file cannot be
+ * replaced or deleted until the mapping is garbage collected.
+ */
+final class SrtCueReader implements CueReader {
+
+    private final ByteBuffer buf;
+    private final int limit;
+    private int pos;
+
+    // Text of the current cue, tags already removed
+    private byte[] text = new byte[256];
+    private int textLen;
+
+    // Parser state, kept between cues
+    private int step = 0; // 0=Index, 1=Time, 2=Text
+    private int index = 0;
+    private boolean hasTime = false;
+    private long start = 0;
+    private long end = 0;
+
+    private VideoInfoVO.SubtitleItemVO pending;
+
+    // Not a valid result of parseLong (which stops short of Long.MIN_VALUE)
+    private static final long NOT_A_NUMBER = Long.MIN_VALUE;
+
+    SrtCueReader(ByteBuffer buf) {
+        this.buf = buf;
+        this.limit = buf.limit();
+        this.pos = buf.position();
+
+        // Skip UTF-8 BOM
+        if (limit - pos >= 3 && (buf.get(pos) & 0xFF) == 0xEF && (buf.get(pos + 1) & 0xFF) == 0xBB
+                && (buf.get(pos + 2) & 0xFF) == 0xBF) {
+            pos += 3;
+        }
+    }
+
+    static CueReader open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0)
+                return CueReader.empty();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("SRT file too large to read: " + size);
+
+            ByteBuffer buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, buf.position()) < 0)
+                    break; // Truncated meanwhile
+            }
+            buf.flip();
+            return new SrtCueReader(buf);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending == null) {
+            pending = readCue();
+        }
+        return pending != null;
+    }
+
+    @Override
+    public VideoInfoVO.SubtitleItemVO next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        VideoInfoVO.SubtitleItemVO item = pending;
+        pending = null;
+        return item;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release: the file was closed once read
+        pos = limit;
+        pending = null;
+    }
+
+    private VideoInfoVO.SubtitleItemVO readCue() {
+        while (pos < limit) {
+            // Find line bounds (\n, \r\n or \r)
+            int lineStart = pos;
+            int eol = pos;
+            while (eol < limit) {
+                byte b = buf.get(eol);
+                if (b == '\n' || b == '\r')
+                    break;
+                eol++;
+            }
+            pos = eol;
+            if (pos < limit) {
+                if (buf.get(pos) == '\r' && pos + 1 < limit && buf.get(pos + 1) == '\n') {
+                    pos += 2;
+                } else {
+                    pos++;
+                }
+            }
+
+            // Trim (same rule as String.trim: everything <= ' ')
+            int s = lineStart;
+            int e = eol;
+            while (s < e && (buf.get(s) & 0xFF) <= ' ')
+                s++;
+            while (e > s && (buf.get(e - 1) & 0xFF) <= ' ')
+                e--;
+
+            if (s == e) {
+                // End of segment
+                VideoInfoVO.SubtitleItemVO item = hasTime ? toItem() : null;
+                step = 0;
+                hasTime = false;
+                textLen = 0;
+                if (item != null)
+                    return item;
+                continue;
+            }
+
+            if (step == 0) {
+                if (isDigits(s, e)) {
+                    // Same as Integer.parseInt: ignore indexes that overflow
+                    long value = parseLong(s, e);
+                    if (value != NOT_A_NUMBER && value <= Integer.MAX_VALUE) {
+                        index = (int) value;
+                        step = 1;
+                    }
+                }
+                // Broken SRTs might skip index lines
+                if (readTimeLine(s, e)) {
+                    step = 2;
+                }
+            } else if (step == 1) {
+                if (readTimeLine(s, e)) {
+                    step = 2;
+                } else {
+                    appendText(s, e);
+                }
+            } else {
+                appendText(s, e);
+            }
+        }
+
+        // Pending buffer at end of file
+        VideoInfoVO.SubtitleItemVO item = hasTime ? toItem() : null;
+        hasTime = false;
+        textLen = 0;
+        return item;
+    }
+
+    /**
+     * A line with "-->" is a time line. Like the line parser (which splits
+     * on "-->"), the end time runs to the next arrow, and a line with nothing
+     * but arrows after the first one drops the cue.
+     */
+    private boolean readTimeLine(int s, int e) {
+        int arrow = indexOfArrow(s, e);
+        if (arrow < 0)
+            return false;
+        int next = arrow + 3;
+        while (next + 3 <= e && indexOfArrow(next, next + 3) == next)
+            next += 3;
+        if (next == e) {
+            hasTime = false;
+            return true;
+        }
+        int endArrow = indexOfArrow(arrow + 3, e);
+        start = parseTime(s, arrow);
+        end = parseTime(arrow + 3, endArrow >= 0 ? endArrow : e);
+        hasTime = true;
+        return true;
+    }
+
+    private VideoInfoVO.SubtitleItemVO toItem() {
+        stripTags();
+        int a = 0;
+        int b = textLen;
+        while (a < b && (text[a] & 0xFF) <= ' ')
+            a++;
+        while (b > a && (text[b - 1] & 0xFF) <= ' ')
+            b--;
+        if (a == b)
+            return null;
+        return new VideoInfoVO.SubtitleItemVO(index, start, end, new String(text, a, b - a, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Append one text line, joining lines with a space.
+     */
+    private void appendText(int s, int e) {
+        ensureCapacity(textLen + (e - s) + 1);
+        if (textLen > 0) {
+            text[textLen++] = ' ';
+        }
+        for (int i = s; i < e; i++) {
+            text[textLen++] = buf.get(i);
+        }
+    }
+
+    /**
+     * Drop "<...>" tags from the joined text in place, like the line parser's
+     * replaceAll("<[^>]*>", ""): a tag may span lines, a '<' without a later
+     * '>' is kept.
+     */
+    private void stripTags() {
+        int out = 0;
+        for (int i = 0; i < textLen; i++) {
+            if (text[i] == '<') {
+                int close = i + 1;
+                while (close < textLen && text[close] != '>')
+                    close++;
+                if (close < textLen) {
+                    i = close;
+                    continue;
+                }
+                // No '>' after this one, so no tag further on either
+                System.arraycopy(text, i, text, out, textLen - i);
+                out += textLen - i;
+                break;
+            }
+            text[out++] = text[i];
+        }
+        textLen = out;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > text.length) {
+            byte[] grown = new byte[Math.max(required, text.length * 2)];
+            System.arraycopy(text, 0, grown, 0, textLen);
+            text = grown;
+        }
+    }
+
+    private boolean isDigits(int s, int e) {
+        for (int i = s; i < e; i++) {
+            byte b = buf.get(i);
+            if (b < '0' || b > '9')
+                return false;
+        }
+        return true;
+    }
+
+    private int indexOfArrow(int s, int e) {
+        for (int i = s; i + 2 < e; i++) {
+            if (buf.get(i) == '-' && buf.get(i + 1) == '-' && buf.get(i + 2) == '>')
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Decode one side of a time line into millis with the rules of the line
+     * parser: exactly "H:M:S" fields (trailing ':' dropped), each an integer
+     * with an optional sign, and the number after ',' or '.' added as
+     * milliseconds ("01,5" is 1005 ms). Anything else decodes to 0.
+     */
+    private long parseTime(int s, int e) {
+        while (s < e && (buf.get(s) & 0xFF) <= ' ')
+            s++;
+        while (e > s && (buf.get(e - 1) & 0xFF) <= ' ')
+            e--;
+        while (e > s && buf.get(e - 1) == ':')
+            e--;
+
+        int c1 = indexOf(':', s, e);
+        int c2 = c1 < 0 ? -1 : indexOf(':', c1 + 1, e);
+        if (c2 < 0 || indexOf(':', c2 + 1, e) >= 0)
+            return 0;
+
+        // Seconds and fraction, trailing separators dropped
+        int f = c2 + 1;
+        int fe = e;
+        while (fe > f && isFractionSeparator(buf.get(fe - 1)))
+            fe--;
+        int d1 = f;
+        while (d1 < fe && !isFractionSeparator(buf.get(d1)))
+            d1++;
+        int d2 = d1 < fe ? d1 + 1 : fe;
+        while (d2 < fe && !isFractionSeparator(buf.get(d2)))
+            d2++;
+
+        long hours = parseLong(s, c1);
+        long minutes = parseLong(c1 + 1, c2);
+        long seconds = parseLong(f, d1);
+        long millis = d1 < fe ? parseLong(d1 + 1, d2) : 0;
+        if (hours == NOT_A_NUMBER || minutes == NOT_A_NUMBER || seconds == NOT_A_NUMBER
+                || millis == NOT_A_NUMBER)
+            return 0;
+        return hours * 3600000 + minutes * 60000 + seconds * 1000 + millis;
+    }
+
+    private static boolean isFractionSeparator(byte b) {
+        return b == ',' || b == '.';
+    }
+
+    private int indexOf(char c, int s, int e) {
+        for (int i = s; i < e; i++) {
+            if (buf.get(i) == c)
+                return i;
+        }
+        return -1;
+    }
+
+    // Same as Long.parseLong on ASCII input, NOT_A_NUMBER where that throws
+    private long parseLong(int s, int e) {
+        boolean negative = false;
+        if (s < e && (buf.get(s) == '-' || buf.get(s) == '+')) {
+            negative = buf.get(s) == '-';
+            s++;
+        }
+        if (s == e)
+            return NOT_A_NUMBER;
+        long value = 0;
+        for (int i = s; i < e; i++) {
+            byte b = buf.get(i);
+            if (b < '0' || b > '9' || value > (Long.MAX_VALUE - (b - '0')) / 10)
+                return NOT_A_NUMBER;
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+}
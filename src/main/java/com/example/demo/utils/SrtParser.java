@@ -1,6 +1,7 @@
 package com.example.demo.utils;
 
 import com.example.demo.model.subtitle.VideoInfoVO;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.BufferedReader;
@@ -16,27 +17,71 @@ import java.util.List;
  * Text content
  * 
  * Empty line separates entries.
+ *
+ * By default files are read cue by cue by {@link SrtCueReader} straight from
+ * their raw bytes. Set {@code erupt.subtitle.byte-srt-parser=false} to fall
+ * back to the line/regex based parser below, which yields the same cues.
+ * The former name {@code erupt.subtitle.mapped-srt-parser} is still read
+ * when the new one is not set (deprecated).
  */
 @Component
 public class SrtParser {
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(SrtParser.class);
 
+    @Value("${erupt.subtitle.byte-srt-parser:${erupt.subtitle.mapped-srt-parser:true}}")
+    private boolean byteParser = true;
+
     public List<VideoInfoVO.SubtitleItemVO> parse(File file) {
         List<VideoInfoVO.SubtitleItemVO> subtitles = new ArrayList<>();
         if (file == null || !file.exists())
             return subtitles;
 
+        try (CueReader reader = open(file)) {
+            reader.forEachRemaining(subtitles::add);
+        }
+
+        log.info("Parsed {} subtitles from {}", subtitles.size(), file.getName());
+        return subtitles;
+    }
+
+    /**
+     * Open a streaming reader over the cues of an SRT file.
+     * Missing files yield an empty reader.
+     */
+    public CueReader open(File file) {
+        if (file == null || !file.exists())
+            return CueReader.empty();
+
+        if (byteParser) {
+            try {
+                return SrtCueReader.open(file);
+            } catch (Exception e) {
+                log.warn("Byte-level SRT parsing failed for {}, falling back to line parser", file.getName(), e);
+            }
+        }
+        return CueReader.of(parseLines(file));
+    }
+
+    /**
+     * Legacy line based parser, kept as a fallback for the byte-level parser.
+     */
+    List<VideoInfoVO.SubtitleItemVO> parseLines(File file) {
+        List<VideoInfoVO.SubtitleItemVO> subtitles = new ArrayList<>();
+
         try (BufferedReader reader = new BufferedReader(new java.io.InputStreamReader(new java.io.FileInputStream(file),
                 java.nio.charset.StandardCharsets.UTF_8))) {
 
-            String line;
+            String line = reader.readLine();
+            // Skip UTF-8 BOM, as the byte-level parser does
+            if (line != null && line.startsWith("\uFEFF"))
+                line = line.substring(1);
             int step = 0; // 0=Index, 1=Time, 2=Text
             int index = 0;
             String timeLine = null;
             StringBuilder textBuilder = new StringBuilder();
 
-            while ((line = reader.readLine()) != null) {
+            for (; line != null; line = reader.readLine()) {
                 line = line.trim();
 
                 if (line.isEmpty()) {
@@ -96,7 +141,6 @@ public class SrtParser {
             log.error("Error parsing SRT file", e);
         }
 
-        log.info("Parsed {} subtitles from {}", subtitles.size(), file.getName());
         return subtitles;
     }
 
@@ -0,0 +1,193 @@
+package com.example.demo.utils;
+
+import com.example.demo.model.subtitle.SubtitleTrack;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a {@link SubtitleTrack} as SRT or WebVTT straight to a channel.
+ *
+ * Timestamps are formatted digit by digit into a reusable byte buffer and
+ * cue text is encoded from the track's char arena, so the document never
+ * exists as one String. The buffer is flushed to the channel whenever it
+ * fills up.
+ *
+ * An instance is not thread-safe; create one per render.
+ */
+public final class SubtitleRenderer {
+
+    public enum Format {
+        SRT(',', "application/x-subrip"),
+        VTT('.', "text/vtt");
+
+        private final char millisSeparator;
+        private final String contentType;
+
+        Format(char millisSeparator, String contentType) {
+            this.millisSeparator = millisSeparator;
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return name().toLowerCase();
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] ARROW = " --> ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VTT_HEADER = "WEBVTT\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final Format format;
+    private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private WritableByteChannel out;
+
+    public SubtitleRenderer(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Render the whole track to the channel. The channel is not closed.
+     */
+    public void render(SubtitleTrack track, WritableByteChannel channel) throws IOException {
+        this.out = channel;
+        buf.clear();
+
+        if (format == Format.VTT)
+            putBytes(VTT_HEADER);
+
+        CharBuffer arena = CharBuffer.wrap(track.textArena());
+        for (int i = 0; i < track.size(); i++) {
+            putInt(track.getIndex(i));
+            putByte('\n');
+            putTime(track.getStartTime(i));
+            putBytes(ARROW);
+            putTime(track.getEndTime(i));
+            putByte('\n');
+
+            putText(arena, track.getOriginalOffset(i), track.getOriginalLength(i));
+            putByte('\n');
+
+            if (track.getTranslationLength(i) > 0) {
+                putText(arena, track.getTranslationOffset(i), track.getTranslationLength(i));
+                putByte('\n');
+            }
+            putByte('\n');
+        }
+        flush();
+        this.out = null;
+    }
+
+    /**
+     * For callers that need the document in memory (small tracks, tests).
+     */
+    public static String renderToString(SubtitleTrack track, Format format) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.min(BUFFER_SIZE, 32 + track.size() * 64));
+        try {
+            new SubtitleRenderer(format).render(track, Channels.newChannel(bytes));
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory channel
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    // HH:MM:SS,mmm (SRT) or HH:MM:SS.mmm (VTT)
+    private void putTime(long totalMs) throws IOException {
+        long h = totalMs / 3600000;
+        long m = (totalMs % 3600000) / 60000;
+        long s = (totalMs % 60000) / 1000;
+        long ms = totalMs % 1000;
+        if (h > 99) {
+            putLong(h);
+        } else {
+            putDigits(h, 2);
+        }
+        putByte(':');
+        putDigits(m, 2);
+        putByte(':');
+        putDigits(s, 2);
+        putByte(format.millisSeparator);
+        putDigits(ms, 3);
+    }
+
+    private void putDigits(long value, int width) throws IOException {
+        ensure(width);
+        int end = buf.position() + width;
+        for (int p = end - 1; p >= end - width; p--) {
+            buf.put(p, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buf.position(end);
+    }
+
+    private void putInt(int value) throws IOException {
+        putLong(value);
+    }
+
+    private void putLong(long value) throws IOException {
+        if (value < 0) {
+            putByte('-');
+            value = -value;
+        }
+        int width = 1;
+        for (long v = value / 10; v > 0; v /= 10)
+            width++;
+        putDigits(value, width);
+    }
+
+    private void putText(CharBuffer arena, int offset, int length) throws IOException {
+        if (length <= 0)
+            return;
+        arena.limit(offset + length).position(offset);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(arena, buf, true);
+            if (result.isOverflow()) {
+                flush();
+                continue;
+            }
+            break;
+        }
+        while (encoder.flush(buf).isOverflow()) {
+            flush();
+        }
+    }
+
+    private void putBytes(byte[] bytes) throws IOException {
+        ensure(bytes.length);
+        buf.put(bytes);
+    }
+
+    private void putByte(char c) throws IOException {
+        ensure(1);
+        buf.put((byte) c);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buf.remaining() < bytes)
+            flush();
+    }
+
+    private void flush() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+        buf.clear();
+    }
+}
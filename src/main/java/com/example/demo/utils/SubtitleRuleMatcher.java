@@ -0,0 +1,323 @@
+package com.example.demo.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compiled, immutable set of subtitle noise rules.
+ *
+ * A cue is classified in a single pass over its (trimmed) characters:
+ * - a char-class state machine tracks "digits / whitespace only" for the
+ * numeric rule, first/last char give the bracket rule, length the short rule
+ * - one Aho-Corasick automaton holds all filler words (whole-cue matches) and
+ * keywords (substring matches), lower-cased
+ *
+ * Classification does not allocate, so it can run on every cue.
+ */
+public final class SubtitleRuleMatcher {
+
+    public static final int KEEP = 0;
+    public static final int AUXILIARY = 1;
+    public static final int DROP = 2;
+
+    private static final int NONE = -1;
+
+    // Char-class rules
+    private final int maxNumericDigits;
+    private final int numericAction;
+    private final int maxShortLength;
+    private final int shortAction;
+    private final char[] bracketOpen;
+    private final char[] bracketClose;
+    private final int[] bracketAction;
+
+    // Aho-Corasick automaton, state 0 is the root
+    private final int[] edgeStart; // edges of state s: [edgeStart[s], edgeStart[s + 1])
+    private final char[] edgeChars; // sorted per state
+    private final int[] edgeTargets;
+    private final int[] fail;
+    private final int[] outputStart; // outputs of state s: [outputStart[s], outputStart[s + 1])
+    private final int[] outputs; // pattern ids, including those reached through fail links
+
+    private final int[] patternLength;
+    private final boolean[] patternExact;
+    private final int[] patternAction;
+
+    private SubtitleRuleMatcher(Builder b) {
+        this.maxNumericDigits = b.maxNumericDigits;
+        this.numericAction = b.numericAction;
+        this.maxShortLength = b.maxShortLength;
+        this.shortAction = b.shortAction;
+
+        int brackets = b.bracketOpen.size();
+        this.bracketOpen = new char[brackets];
+        this.bracketClose = new char[brackets];
+        this.bracketAction = new int[brackets];
+        for (int i = 0; i < brackets; i++) {
+            bracketOpen[i] = b.bracketOpen.get(i);
+            bracketClose[i] = b.bracketClose.get(i);
+            bracketAction[i] = b.bracketAction.get(i);
+        }
+
+        int patterns = b.patterns.size();
+        this.patternLength = new int[patterns];
+        this.patternExact = new boolean[patterns];
+        this.patternAction = new int[patterns];
+
+        // 1. Trie
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> stateOutputs = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        stateOutputs.add(new ArrayList<>());
+        for (int p = 0; p < patterns; p++) {
+            String word = b.patterns.get(p);
+            patternLength[p] = word.length();
+            patternExact[p] = b.patternExact.get(p);
+            patternAction[p] = b.patternAction.get(p);
+
+            int state = 0;
+            for (int i = 0; i < word.length(); i++) {
+                Integer next = trie.get(state).get(word.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    stateOutputs.add(new ArrayList<>());
+                    trie.get(state).put(word.charAt(i), next);
+                }
+                state = next;
+            }
+            stateOutputs.get(state).add(p);
+        }
+
+        // 2. Fail links (BFS), merging outputs along them
+        int states = trie.size();
+        this.fail = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : trie.get(0).values()) {
+            fail[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Character, Integer> edge : trie.get(state).entrySet()) {
+                int child = edge.getValue();
+                int f = fail[state];
+                while (f != 0 && !trie.get(f).containsKey(edge.getKey()))
+                    f = fail[f];
+                Integer target = trie.get(f).get(edge.getKey());
+                fail[child] = (target != null && target != child) ? target : 0;
+                stateOutputs.get(child).addAll(stateOutputs.get(fail[child]));
+                queue.add(child);
+            }
+        }
+
+        // 3. Flatten into arrays
+        this.edgeStart = new int[states + 1];
+        this.outputStart = new int[states + 1];
+        int edgeCount = 0;
+        int outputCount = 0;
+        for (int s = 0; s < states; s++) {
+            edgeCount += trie.get(s).size();
+            outputCount += stateOutputs.get(s).size();
+        }
+        this.edgeChars = new char[edgeCount];
+        this.edgeTargets = new int[edgeCount];
+        this.outputs = new int[outputCount];
+        int e = 0;
+        int o = 0;
+        for (int s = 0; s < states; s++) {
+            edgeStart[s] = e;
+            for (Map.Entry<Character, Integer> edge : trie.get(s).entrySet()) {
+                edgeChars[e] = edge.getKey();
+                edgeTargets[e] = edge.getValue();
+                e++;
+            }
+            outputStart[s] = o;
+            for (int p : stateOutputs.get(s)) {
+                outputs[o++] = p;
+            }
+        }
+        edgeStart[states] = e;
+        outputStart[states] = o;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int classify(CharSequence text) {
+        if (text == null)
+            return shortAction;
+        return classify(text, 0, text.length());
+    }
+
+    /**
+     * Classify text[offset, offset + length) as KEEP, AUXILIARY or DROP.
+     * When several rules match, the strongest action wins (DROP > AUXILIARY).
+     */
+    public int classify(CharSequence text, int offset, int length) {
+        int s = offset;
+        int e = offset + length;
+        while (s < e && text.charAt(s) <= ' ')
+            s++;
+        while (e > s && text.charAt(e - 1) <= ' ')
+            e--;
+
+        int verdict = KEEP;
+        int trimmedLength = e - s;
+
+        if (trimmedLength <= maxShortLength)
+            verdict = Math.max(verdict, shortAction);
+
+        if (trimmedLength > 0) {
+            char first = text.charAt(s);
+            char last = text.charAt(e - 1);
+            for (int i = 0; i < bracketOpen.length; i++) {
+                if (first == bracketOpen[i] && last == bracketClose[i])
+                    verdict = Math.max(verdict, bracketAction[i]);
+            }
+        }
+
+        int digits = 0;
+        boolean digitsOnly = true;
+        int state = 0;
+        for (int i = s; i < e; i++) {
+            char c = text.charAt(i);
+
+            // Char-class machine: digits and whitespace only
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (!isRegexWhitespace(c)) {
+                digitsOnly = false;
+            }
+
+            // Automaton step
+            if (edgeChars.length > 0) {
+                state = step(state, Character.toLowerCase(c));
+                for (int o = outputStart[state]; o < outputStart[state + 1]; o++) {
+                    int p = outputs[o];
+                    if (!patternExact[p] || (i == e - 1 && patternLength[p] == trimmedLength)) {
+                        verdict = Math.max(verdict, patternAction[p]);
+                    }
+                }
+            }
+        }
+
+        if (digitsOnly && digits > 0 && digits <= maxNumericDigits)
+            verdict = Math.max(verdict, numericAction);
+
+        return verdict;
+    }
+
+    private int step(int state, char c) {
+        while (true) {
+            int target = findEdge(state, c);
+            if (target != NONE)
+                return target;
+            if (state == 0)
+                return 0;
+            state = fail[state];
+        }
+    }
+
+    private int findEdge(int state, char c) {
+        int lo = edgeStart[state];
+        int hi = edgeStart[state + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char m = edgeChars[mid];
+            if (m < c) {
+                lo = mid + 1;
+            } else if (m > c) {
+                hi = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return NONE;
+    }
+
+    // Same set as the regex "\s"
+    private static boolean isRegexWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    public static class Builder {
+        private int maxNumericDigits = 0;
+        private int numericAction = KEEP;
+        private int maxShortLength = -1;
+        private int shortAction = KEEP;
+        private final List<Character> bracketOpen = new ArrayList<>();
+        private final List<Character> bracketClose = new ArrayList<>();
+        private final List<Integer> bracketAction = new ArrayList<>();
+        private final List<String> patterns = new ArrayList<>();
+        private final List<Boolean> patternExact = new ArrayList<>();
+        private final List<Integer> patternAction = new ArrayList<>();
+
+        /**
+         * Digits-only cues (whitespace ignored) with at most maxDigits digits.
+         */
+        public Builder numeric(int maxDigits, int action) {
+            if (action >= numericAction) {
+                this.maxNumericDigits = Math.max(this.maxNumericDigits, maxDigits);
+                this.numericAction = action;
+            }
+            return this;
+        }
+
+        /**
+         * Cues of at most maxLength chars after trimming.
+         */
+        public Builder shortText(int maxLength, int action) {
+            if (action >= shortAction) {
+                this.maxShortLength = Math.max(this.maxShortLength, maxLength);
+                this.shortAction = action;
+            }
+            return this;
+        }
+
+        /**
+         * Cues starting with open and ending with close, e.g. "[Music]".
+         */
+        public Builder bracket(char open, char close, int action) {
+            bracketOpen.add(open);
+            bracketClose.add(close);
+            bracketAction.add(action);
+            return this;
+        }
+
+        /**
+         * Cues that are exactly this word (case-insensitive, trimmed).
+         */
+        public Builder filler(String word, int action) {
+            return pattern(word, true, action);
+        }
+
+        /**
+         * Cues containing this word anywhere (case-insensitive).
+         */
+        public Builder keyword(String word, int action) {
+            return pattern(word, false, action);
+        }
+
+        private Builder pattern(String word, boolean exact, int action) {
+            if (word == null || word.isEmpty())
+                return this;
+            StringBuilder lower = new StringBuilder(word.length());
+            for (int i = 0; i < word.length(); i++) {
+                lower.append(Character.toLowerCase(word.charAt(i)));
+            }
+            patterns.add(lower.toString());
+            patternExact.add(exact);
+            patternAction.add(action);
+            return this;
+        }
+
+        public SubtitleRuleMatcher build() {
+            return new SubtitleRuleMatcher(this);
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package com.example.demo.utils;
+
+import com.example.demo.model.subtitle.SubtitleTrack;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary on-disk format for processed subtitle tracks (*.track.bin).
+ *
+ * Layout (big-endian):
+ *
+ * <pre>
+ * header     magic "SLTK", version, cueCount, checkpointInterval,
+ *            then position/length of every section below
+ * text       UTF-8 texts, per cue: original then translation
+ * offsets    int[2 * cueCount + 1] byte offsets into text; cue i has its
+ *            original in [2i, 2i+1) and translation in [2i+1, 2i+2)
+ * times      per cue: flags byte (1 = has translation), zigzag varints of
+ *            index delta, start delta (to the previous cue) and duration
+ * checkpoints per checkpointInterval cues: times offset, previous index and
+ *            previous start, so any cue is decoded in at most interval steps
+ * key        UTF-8 identity of what the track was built from
+ * </pre>
+ *
+ * {@link #read(Path)} reads only the header, checkpoints and key; a slice
+ * of cues is then read with a few positional reads, without loading or
+ * parsing the rest of the file. The file is not memory-mapped: on Windows
+ * a mapped file cannot be replaced or deleted until the mapping is garbage
+ * collected.
+ */
+public final class SubtitleTrackFile {
+
+    public static final int MAGIC = 0x534C544B; // "SLTK"
+    public static final int VERSION = 1;
+
+    private static final int CHECKPOINT_INTERVAL = 64;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8 * 8;
+    private static final int FLAG_TRANSLATION = 1;
+
+    private SubtitleTrackFile() {
+    }
+
+    /**
+     * Write the track. The key is stored as-is and returned by
+     * {@link View#getKey()} so callers can tell whether the file is stale.
+     */
+    public static void write(SubtitleTrack track, String key, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(track, key, channel);
+        }
+    }
+
+    /**
+     * Write the track into an empty channel, which is left open (e.g. to be
+     * forced to disk by the caller).
+     */
+    public static void write(SubtitleTrack track, String key, FileChannel channel) throws IOException {
+        int n = track.size();
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        long pos = HEADER_SIZE;
+        channel.position(pos);
+
+        // 1. Text block, recording byte offsets
+        int[] offsets = new int[2 * n + 1];
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer arena = CharBuffer.wrap(track.textArena());
+        long textBytes = 0;
+        for (int i = 0; i < n; i++) {
+            offsets[2 * i] = (int) textBytes;
+            textBytes += encode(encoder, arena, track.getOriginalOffset(i), track.getOriginalLength(i), buf,
+                    channel);
+            offsets[2 * i + 1] = (int) textBytes;
+            textBytes += encode(encoder, arena, track.getTranslationOffset(i), track.getTranslationLength(i), buf,
+                    channel);
+        }
+        offsets[2 * n] = (int) textBytes;
+        drain(buf, channel);
+        long textPos = pos;
+        pos += textBytes;
+
+        // 2. Offset table
+        long offsetsPos = pos;
+        for (int offset : offsets) {
+            ensure(buf, channel, 4);
+            buf.putInt(offset);
+        }
+        drain(buf, channel);
+        pos += 4L * offsets.length;
+
+        // 3. Times with checkpoints
+        int checkpoints = (n + CHECKPOINT_INTERVAL - 1) / CHECKPOINT_INTERVAL;
+        int[] checkpointOffsets = new int[checkpoints];
+        int[] checkpointIndexes = new int[checkpoints];
+        long[] checkpointStarts = new long[checkpoints];
+        long timesPos = pos;
+        int timesBytes = 0;
+        int prevIndex = 0;
+        long prevStart = 0;
+        for (int i = 0; i < n; i++) {
+            if (i % CHECKPOINT_INTERVAL == 0) {
+                int c = i / CHECKPOINT_INTERVAL;
+                checkpointOffsets[c] = timesBytes;
+                checkpointIndexes[c] = prevIndex;
+                checkpointStarts[c] = prevStart;
+            }
+            ensure(buf, channel, 1 + 3 * 10);
+            int before = buf.position();
+            buf.put((byte) (track.hasTranslation(i) ? FLAG_TRANSLATION : 0));
+            putVarLong(buf, zigzag(track.getIndex(i) - (long) prevIndex));
+            putVarLong(buf, zigzag(track.getStartTime(i) - prevStart));
+            putVarLong(buf, zigzag(track.getEndTime(i) - track.getStartTime(i)));
+            timesBytes += buf.position() - before;
+            prevIndex = track.getIndex(i);
+            prevStart = track.getStartTime(i);
+        }
+        drain(buf, channel);
+        pos += timesBytes;
+
+        // 4. Checkpoints
+        long checkpointsPos = pos;
+        for (int c = 0; c < checkpoints; c++) {
+            ensure(buf, channel, 16);
+            buf.putInt(checkpointOffsets[c]).putInt(checkpointIndexes[c]).putLong(checkpointStarts[c]);
+        }
+        drain(buf, channel);
+        pos += 16L * checkpoints;
+
+        // 5. Key
+        byte[] keyBytes = key != null ? key.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        long keyPos = pos;
+        channel.write(ByteBuffer.wrap(keyBytes));
+
+        // 6. Header last, once all positions are known
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(CHECKPOINT_INTERVAL);
+        header.putLong(textPos).putLong(textBytes);
+        header.putLong(offsetsPos);
+        header.putLong(timesPos).putLong(timesBytes);
+        header.putLong(checkpointsPos);
+        header.putLong(keyPos).putLong(keyBytes.length);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    /**
+     * Read the header, checkpoints and key. Cues are read from the file on
+     * demand with positional reads, it is not kept open.
+     */
+    public static View read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE)
+                throw new IOException("Not a subtitle track file: " + path);
+            ByteBuffer header = read(channel, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC)
+                throw new IOException("Bad magic in subtitle track file");
+            if (header.getInt(4) != VERSION)
+                throw new IOException("Unsupported subtitle track file version " + header.getInt(4));
+            int cues = header.getInt(8);
+            int interval = header.getInt(12);
+            long checkpointsPos = header.getLong(56);
+            long keyPos = header.getLong(64);
+            long keyLen = header.getLong(72);
+            int checkpoints = interval > 0 ? (cues + interval - 1) / interval : -1;
+            if (cues < 0 || checkpoints < 0 || checkpointsPos + 16L * checkpoints > size || keyPos + keyLen > size)
+                throw new IOException("Truncated subtitle track file");
+            ByteBuffer table = read(channel, checkpointsPos, 16 * checkpoints);
+            ByteBuffer key = read(channel, keyPos, (int) keyLen);
+            return new View(path, size, header, table, new String(key.array(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Header and checkpoints of a track file; cues are read from the file.
+     * Safe for concurrent readers.
+     */
+    public static final class View {
+        private final Path path;
+        private final long fileSize;
+        private final int size;
+        private final int interval;
+        private final long textPos;
+        private final long offsetsPos;
+        private final long timesPos;
+        private final long timesBytes;
+        private final int[] checkpointOffsets;
+        private final int[] checkpointIndexes;
+        private final long[] checkpointStarts;
+        private final String key;
+
+        private View(Path path, long fileSize, ByteBuffer header, ByteBuffer table, String key) {
+            this.path = path;
+            this.fileSize = fileSize;
+            this.size = header.getInt(8);
+            this.interval = header.getInt(12);
+            this.textPos = header.getLong(16);
+            this.offsetsPos = header.getLong(32);
+            this.timesPos = header.getLong(40);
+            this.timesBytes = header.getLong(48);
+            int checkpoints = table.capacity() / 16;
+            this.checkpointOffsets = new int[checkpoints];
+            this.checkpointIndexes = new int[checkpoints];
+            this.checkpointStarts = new long[checkpoints];
+            for (int c = 0; c < checkpoints; c++) {
+                checkpointOffsets[c] = table.getInt(16 * c);
+                checkpointIndexes[c] = table.getInt(16 * c + 4);
+                checkpointStarts[c] = table.getLong(16 * c + 8);
+            }
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int getIndex(int row) throws IOException {
+            return (int) decode(row)[0];
+        }
+
+        public long getStartTime(int row) throws IOException {
+            return decode(row)[1];
+        }
+
+        public long getEndTime(int row) throws IOException {
+            return decode(row)[2];
+        }
+
+        public String getOriginal(int row) throws IOException {
+            return slice(row, row + 1).getOriginal(0);
+        }
+
+        /**
+         * @return the translation, or null if the cue has none
+         */
+        public String getTranslation(int row) throws IOException {
+            return slice(row, row + 1).getTranslation(0);
+        }
+
+        /**
+         * First row whose start time is >= timeMs (size() if none), assuming
+         * the track is sorted by start time.
+         */
+        public int rowAt(long timeMs) throws IOException {
+            if (size == 0)
+                return 0;
+            // A checkpoint holds the start of the last row of the block before
+            // it, so the first block whose last start is >= timeMs holds the row
+            int lo = 0;
+            int hi = checkpointStarts.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (checkpointStarts[mid + 1] >= timeMs) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            int block = lo;
+            int row = block * interval;
+            int end = Math.min(size, row + interval);
+            ByteBuffer times;
+            try (FileChannel channel = open()) {
+                times = read(channel, timesPos + checkpointOffsets[block], timesEnd(block) - checkpointOffsets[block]);
+            }
+            long start = checkpointStarts[block];
+            int[] cursor = { 0 };
+            for (; row < end; row++) {
+                cursor[0]++; // flags
+                getVarLong(times, cursor); // index
+                start += unzigzag(getVarLong(times, cursor));
+                getVarLong(times, cursor); // duration
+                if (start >= timeMs)
+                    return row;
+            }
+            return end;
+        }
+
+        /**
+         * Read rows [from, to) into a new track: their times, offsets and
+         * texts, one positional read each.
+         */
+        public SubtitleTrack slice(int from, int to) throws IOException {
+            from = Math.max(0, from);
+            to = Math.min(size, to);
+            SubtitleTrack track = new SubtitleTrack(Math.max(to - from, 0));
+            if (from >= to)
+                return track;
+
+            int block = from / interval;
+            int lastBlock = (to - 1) / interval;
+            ByteBuffer times;
+            ByteBuffer offsets;
+            ByteBuffer text;
+            try (FileChannel channel = open()) {
+                times = read(channel, timesPos + checkpointOffsets[block],
+                        timesEnd(lastBlock) - checkpointOffsets[block]);
+                offsets = read(channel, offsetsPos + 8L * from, 4 * (2 * (to - from) + 1));
+                int textFrom = offsets.getInt(0);
+                text = read(channel, textPos + textFrom, offsets.getInt(8 * (to - from)) - textFrom);
+            }
+            int textFrom = offsets.getInt(0);
+
+            int[] cursor = { 0 };
+            int index = checkpointIndexes[block];
+            long start = checkpointStarts[block];
+            for (int row = block * interval; row < to; row++) {
+                int flags = times.get(cursor[0]++);
+                index += (int) unzigzag(getVarLong(times, cursor));
+                start += unzigzag(getVarLong(times, cursor));
+                long end = start + unzigzag(getVarLong(times, cursor));
+                if (row < from)
+                    continue;
+                int i = 2 * (row - from);
+                int r = track.add(index, start, end,
+                        text(text, offsets.getInt(4 * i) - textFrom, offsets.getInt(4 * i + 4) - textFrom));
+                if ((flags & FLAG_TRANSLATION) != 0)
+                    track.setTranslation(r,
+                            text(text, offsets.getInt(4 * i + 4) - textFrom, offsets.getInt(4 * i + 8) - textFrom));
+            }
+            return track;
+        }
+
+        public SubtitleTrack toTrack() throws IOException {
+            return slice(0, size);
+        }
+
+        // { index, start, end } of one row, from its block's times
+        private long[] decode(int row) throws IOException {
+            if (row < 0 || row >= size)
+                throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+            int block = row / interval;
+            ByteBuffer times;
+            try (FileChannel channel = open()) {
+                times = read(channel, timesPos + checkpointOffsets[block], timesEnd(block) - checkpointOffsets[block]);
+            }
+            int[] cursor = { 0 };
+            long index = checkpointIndexes[block];
+            long start = checkpointStarts[block];
+            long duration = 0;
+            for (int r = block * interval; r <= row; r++) {
+                cursor[0]++; // flags
+                index += unzigzag(getVarLong(times, cursor));
+                start += unzigzag(getVarLong(times, cursor));
+                duration = unzigzag(getVarLong(times, cursor));
+            }
+            return new long[] { index, start, start + duration };
+        }
+
+        private FileChannel open() throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            if (channel.size() != fileSize) {
+                channel.close();
+                throw new IOException("Subtitle track file replaced since its header was read");
+            }
+            return channel;
+        }
+
+        // End of the block's times, relative to the times section
+        private int timesEnd(int block) {
+            return block + 1 < checkpointOffsets.length ? checkpointOffsets[block + 1] : (int) timesBytes;
+        }
+
+        private static String text(ByteBuffer text, int from, int to) {
+            return new String(text.array(), from, to - from, StandardCharsets.UTF_8);
+        }
+
+        private static long getVarLong(ByteBuffer buf, int[] cursor) {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                byte b = buf.get(cursor[0]++);
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0)
+                    return value;
+                shift += 7;
+            }
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0)
+                throw new IOException("Truncated subtitle track file");
+        }
+        return buf;
+    }
+
+    private static long encode(CharsetEncoder encoder, CharBuffer arena, int offset, int length, ByteBuffer buf,
+            FileChannel channel) throws IOException {
+        if (length <= 0)
+            return 0;
+        arena.limit(offset + length).position(offset);
+        encoder.reset();
+        long written = 0;
+        while (true) {
+            int before = buf.position();
+            boolean overflow = encoder.encode(arena, buf, true).isOverflow();
+            written += buf.position() - before;
+            if (!overflow)
+                break;
+            drain(buf, channel);
+        }
+        int before = buf.position();
+        encoder.flush(buf);
+        written += buf.position() - before;
+        return written;
+    }
+
+    private static void putVarLong(ByteBuffer buf, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buf.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buf.put((byte) value);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void ensure(ByteBuffer buf, FileChannel channel, int bytes) throws IOException {
+        if (buf.remaining() < bytes)
+            drain(buf, channel);
+    }
+
+    private static void drain(ByteBuffer buf, FileChannel channel) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+}
@@ -6,9 +6,10 @@ import org.springframework.stereotype.Component;
 import java.io.BufferedReader;
 import java.io.File;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.NoSuchElementException;
 import java.util.regex.Pattern;
 
 @Component
@@ -16,85 +17,168 @@ public class VttParser {
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(VttParser.class);
     private static final Pattern TIMESTAMP_PATTERN = Pattern.compile("(\\d{2}:)?(\\d{2}:)?\\d{2}\\.\\d{3}");
+    private static final Pattern TAG_PATTERN = Pattern.compile("<[^>]*>");
+    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
 
     public List<VideoInfoVO.SubtitleItemVO> parse(File file) {
         List<VideoInfoVO.SubtitleItemVO> subtitles = new ArrayList<>();
         if (file == null || !file.exists())
             return subtitles;
 
-        try (BufferedReader reader = new BufferedReader(new java.io.InputStreamReader(new java.io.FileInputStream(file),
-                java.nio.charset.StandardCharsets.UTF_8))) {
-            String line;
-            String timeLine = null;
-            StringBuilder textBuilder = new StringBuilder();
-            int index = 0;
-
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-
-                // Skip header 'WEBVTT' or empty lines at start
-                if (line.isEmpty()) {
-                    // Empty line usually separates segments.
-                    // However, we only flush if we have pending data to avoid flushing on initial
-                    // empty lines.
-                    if (timeLine != null && textBuilder.length() > 0) {
-                        addSubItem(subtitles, ++index, timeLine, textBuilder.toString());
-                        textBuilder.setLength(0);
-                        timeLine = null; // Reset state
+        try (CueReader reader = open(file)) {
+            reader.forEachRemaining(subtitles::add);
+        }
+
+        log.info("Parsed {} subtitles from {}", subtitles.size(), file.getName());
+        return subtitles;
+    }
+
+    /**
+     * Open a streaming reader over the cues of a VTT file.
+     * Missing or unreadable files yield an empty reader.
+     */
+    public CueReader open(File file) {
+        if (file == null || !file.exists())
+            return CueReader.empty();
+
+        try {
+            return new VttCueReader(new BufferedReader(new java.io.InputStreamReader(
+                    new java.io.FileInputStream(file), java.nio.charset.StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            log.error("Error opening VTT file", e);
+            return CueReader.empty();
+        }
+    }
+
+    /**
+     * Reads one cue per {@link #next()} call, keeping only the current cue's
+     * lines in memory.
+     */
+    private class VttCueReader implements CueReader {
+
+        private final BufferedReader reader;
+        private String timeLine = null;
+        private final StringBuilder textBuilder = new StringBuilder();
+        private int index = 0;
+        private boolean eof = false;
+        private VideoInfoVO.SubtitleItemVO pending;
+
+        VttCueReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (pending == null && !eof) {
+                pending = readCue();
+            }
+            return pending != null;
+        }
+
+        @Override
+        public VideoInfoVO.SubtitleItemVO next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            VideoInfoVO.SubtitleItemVO item = pending;
+            pending = null;
+            return item;
+        }
+
+        @Override
+        public void close() {
+            eof = true;
+            try {
+                reader.close();
+            } catch (IOException e) {
+                log.warn("Error closing VTT file", e);
+            }
+        }
+
+        /**
+         * Consume lines until one cue is complete. Returns null when the lines
+         * read so far produced nothing (caller retries until EOF).
+         */
+        private VideoInfoVO.SubtitleItemVO readCue() {
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+
+                    // Skip header 'WEBVTT' or empty lines at start
+                    if (line.isEmpty()) {
+                        // Empty line usually separates segments.
+                        // However, we only flush if we have pending data to avoid flushing on initial
+                        // empty lines.
+                        if (timeLine != null && textBuilder.length() > 0) {
+                            VideoInfoVO.SubtitleItemVO item = toItem(++index, timeLine, textBuilder.toString());
+                            textBuilder.setLength(0);
+                            timeLine = null; // Reset state
+                            return item;
+                        }
+                        continue;
                     }
-                    continue;
-                }
 
-                // Check for timestamp line: "00:00:01.000 --> 00:00:04.000"
-                if (line.contains("-->")) {
-                    // Safety flush: if we stumbled upon a new timestamp but state wasn't cleared
-                    // (e.g. strict VTT compliance issue)
-                    if (timeLine != null && textBuilder.length() > 0) {
-                        addSubItem(subtitles, ++index, timeLine, textBuilder.toString());
-                        textBuilder.setLength(0);
+                    // Check for timestamp line: "00:00:01.000 --> 00:00:04.000"
+                    if (line.contains("-->")) {
+                        // Safety flush: if we stumbled upon a new timestamp but state wasn't cleared
+                        // (e.g. strict VTT compliance issue)
+                        VideoInfoVO.SubtitleItemVO item = null;
+                        if (timeLine != null && textBuilder.length() > 0) {
+                            item = toItem(++index, timeLine, textBuilder.toString());
+                            textBuilder.setLength(0);
+                        }
+                        timeLine = line;
+                        if (item != null)
+                            return item;
+                    } else if (timeLine != null) {
+                        // This is text content
+                        // Check if it looks like an index number just in case?
+                        // Usually handled by empty line check, but good for robustness.
+                        // But some text might be just numbers. Let's trust empty line logic first.
+                        if (textBuilder.length() > 0)
+                            textBuilder.append(" ");
+                        textBuilder.append(line);
                     }
-                    timeLine = line;
-                } else if (timeLine != null) {
-                    // This is text content
-                    // Check if it looks like an index number just in case?
-                    // Usually handled by empty line check, but good for robustness.
-                    // But some text might be just numbers. Let's trust empty line logic first.
-                    if (textBuilder.length() > 0)
-                        textBuilder.append(" ");
-                    textBuilder.append(line);
                 }
+            } catch (Exception e) {
+                log.error("Error parsing VTT file", e);
             }
 
-        } catch (Exception e) {
-            log.error("Error parsing VTT file", e);
-            e.printStackTrace();
+            // End of file: flush the trailing cue (no blank line after it)
+            eof = true;
+            close();
+            if (timeLine != null && textBuilder.length() > 0) {
+                VideoInfoVO.SubtitleItemVO item = toItem(++index, timeLine, textBuilder.toString());
+                textBuilder.setLength(0);
+                timeLine = null;
+                return item;
+            }
+            return null;
         }
-
-        log.info("Parsed {} subtitles from {}", subtitles.size(), file.getName());
-        return subtitles;
     }
 
-    private void addSubItem(List<VideoInfoVO.SubtitleItemVO> list, int index, String timeLine, String text) {
+    private VideoInfoVO.SubtitleItemVO toItem(int index, String timeLine, String text) {
         // Parse Timestamps
         String[] parts = timeLine.split("-->");
         if (parts.length < 2)
-            return;
+            return null;
 
         long start = parseTime(parts[0].trim());
         long end = parseTime(parts[1].trim());
 
         // Clean text (remove tags like <c.color> or &nbsp;)
-        String cleanText = text.replaceAll("<[^>]*>", "").trim();
+        String cleanText = TAG_PATTERN.matcher(text).replaceAll("").trim();
         if (!cleanText.isEmpty()) {
-            list.add(new VideoInfoVO.SubtitleItemVO(index, start, end, cleanText));
+            return new VideoInfoVO.SubtitleItemVO(index, start, end, cleanText);
         }
+        return null;
     }
 
     private long parseTime(String time) {
         // Formats: MM:SS.mmm or HH:MM:SS.mmm
         // VTT lines might be: "00:00:04.000 align:start position:0%"
         // We need to strip extra attributes.
-        String timestamp = time.trim().split("\\s+")[0];
+        String timestamp = WHITESPACE_PATTERN.split(time.trim())[0];
 
         try {
             String[] parts = timestamp.split(":");
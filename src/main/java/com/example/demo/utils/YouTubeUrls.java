@@ -0,0 +1,40 @@
+package com.example.demo.utils;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local parsing of YouTube URLs, so the video id is known without asking yt-dlp.
+ */
+public final class YouTubeUrls {
+
+    private static final Pattern VIDEO_ID = Pattern.compile("[A-Za-z0-9_-]{11}");
+
+    // watch?v=ID, youtu.be/ID, /shorts/ID, /embed/ID, /live/ID, /v/ID
+    private static final Pattern URL_PATTERN = Pattern.compile(
+            "(?:[?&]v=|youtu\\.be/|/shorts/|/embed/|/live/|/v/)([A-Za-z0-9_-]{11})(?![A-Za-z0-9_-])");
+
+    private YouTubeUrls() {
+    }
+
+    /**
+     * @return the 11 character video id, or null if the URL is not a
+     *         recognised single-video URL (playlists, channels, other sites)
+     */
+    public static String extractVideoId(String url) {
+        if (url == null)
+            return null;
+        String trimmed = url.trim();
+        if (VIDEO_ID.matcher(trimmed).matches())
+            return trimmed;
+        if (!trimmed.contains("youtube.com") && !trimmed.contains("youtu.be")
+                && !trimmed.contains("youtube-nocookie.com"))
+            return null;
+        Matcher m = URL_PATTERN.matcher(trimmed);
+        return m.find() ? m.group(1) : null;
+    }
+
+    public static String watchUrl(String videoId) {
+        return "https://www.youtube.com/watch?v=" + videoId;
+    }
+}
@@ -1,101 +1,89 @@
 package com.example.demo.utils;
 
+import com.example.demo.model.subtitle.VideoMeta;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.jetbrains.annotations.NotNull;
-import org.springframework.beans.factory.annotation.Value;
+import com.example.demo.service.SubtitleStorage;
+import com.example.demo.service.YtDlpScheduler;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
 
 @Component
 public class YtDlpExtraUtils {
+    private static final Logger logger = Logger.getLogger(YtDlpExtraUtils.class.getName());
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    @Value("${erupt.youtube-path}")
-    private String youtubePath;
+    @Autowired
+    private YtDlpScheduler scheduler;
+
+    @Autowired
+    private SubtitleStorage storage;
 
-    public JsonNode getVideoInfo(String url) throws Exception {
+    /**
+     * id, title and duration of a video. The --dump-json line is streamed
+     * through a parser that keeps only these fields, the rest of the
+     * (multi-megabyte) dump is skipped without building a tree.
+     */
+    public VideoMeta getVideoMeta(String url) throws Exception {
+        AtomicReference<VideoMeta> meta = new AtomicReference<>();
 
         // Command: yt-dlp --dump-json --skip-download [url]
-        Process process = getProcess(new ProcessBuilder("C:\\666_sdk\\yt-dlp.exe", "--dump-json", "--skip-download", url));
-
-        StringBuilder jsonOutput = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Filter out logs/warnings. Real JSON output starts with "{"
-                if (line.trim().startsWith("{")) {
-                    jsonOutput.append(line);
-                }
-            }
+        int exitCode = run(YtDlpScheduler.Priority.METADATA,
+                new ProcessBuilder("C:\\666_sdk\\yt-dlp.exe", "--dump-json", "--skip-download", url),
+                line -> {
+                    // Filter out logs/warnings. Real JSON output starts with "{"
+                    if (meta.get() == null && line.trim().startsWith("{")) {
+                        try (JsonParser parser = objectMapper.getFactory().createParser(line)) {
+                            meta.set(readMeta(parser));
+                        }
+                    }
+                });
+
+        if (exitCode != 0) {
+            throw new RuntimeException("yt-dlp failed with exit code " + exitCode);
         }
-
-        String result = jsonOutput.toString();
-        if (result.isEmpty()) {
+        if (meta.get() == null) {
             throw new RuntimeException("No JSON output from yt-dlp");
         }
-
-        if (!process.waitFor(30, TimeUnit.SECONDS)) {
-            process.destroy();
-            throw new RuntimeException("Timeout executing yt-dlp");
-        }
-
-        if (process.exitValue() != 0) {
-            throw new RuntimeException("yt-dlp failed with exit code " + process.exitValue());
-        }
-
-        return objectMapper.readTree(result);
+        return meta.get();
     }
 
-    public java.io.File downloadSubtitle(String url, JsonNode meta) throws Exception {
-        // 1. Get ID to construct filename
-        String videoId = meta.get("id").asText();
+    public java.io.File downloadSubtitle(String url, String videoId) throws Exception {
+        // 1. ID (from the metadata) constructs the filename
 
-        // Output format: /tmp/sublingo/videoID
-        String tempDir = youtubePath + File.separator + "sublingo";
-        File dir = new File(tempDir);
-        if (!dir.exists())
-            dir.mkdirs();
+        // Output format: <video's storage dir>/videoID
+        File dir = storage.dirFor(videoId);
 
         // We force vtt
-        String outputTemplate = tempDir + File.separator + videoId + ".%(ext)s";
+        String outputTemplate = dir.getPath() + File.separator + videoId + ".%(ext)s";
 
         // Check if file already exists
-        File expectedFile = new File(tempDir, videoId + ".ja.srt");
+        File expectedFile = new File(dir, videoId + ".ja.srt");
         if (expectedFile.exists()) {
             return expectedFile;
         }
 
         // Cmd: yt-dlp --cookies cookies.txt --js-runtimes node --skip-download
-        // Cmd: yt-dlp --cookies cookies.txt --js-runtimes node --skip-download
-        Process process = getProcess(new ProcessBuilder(
-                "C:\\666_sdk\\yt-dlp.exe",
-                "--cookies", "C:\\666_sdk\\cookies.txt", // User provided
-                "--js-runtimes", "node", // User provided
-                "--skip-download",
-                "--write-sub",
-                "--write-auto-sub",
-                "--sub-format", "srt", // Force convert to SRT
-                "--sub-lang", "zh-Hans,ja", // Try English, fallback to Japanese
-                "-o", outputTemplate,
-                url));
-
-        // Consume output to prevent blocking
-        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-        String line;
-        while ((line = reader.readLine()) != null) {
-            // System.out.println(line); // debug
+        int exitCode = run(YtDlpScheduler.Priority.SUBTITLE, subtitleCommand(url, outputTemplate),
+                ProcessRunner.LineConsumer.DISCARD);
+        if (exitCode != 0) {
+            // Some languages may still have been written
+            logger.warning("yt-dlp subtitle download for " + videoId + " exited with code " + exitCode);
         }
 
-        process.waitFor(60, TimeUnit.SECONDS);
-
         // Find the file. yt-dlp appends language code, e.g. videoID.en.srt
-        File srtFile = new File(tempDir, videoId + ".ja.srt");
+        File srtFile = new File(dir, videoId + ".ja.srt");
         if (srtFile.exists())
             return srtFile;
 
@@ -109,12 +97,146 @@ public class YtDlpExtraUtils {
         return null;
     }
 
-    @NotNull
-    private static Process getProcess(ProcessBuilder outputTemplate) throws IOException {
-        ProcessBuilder pb = outputTemplate;
+    /**
+     * Expand a playlist or channel without resolving each video
+     * (--flat-playlist). Entries carry id, title and duration.
+     *
+     * @param maxVideos stop after this many entries (0 = all)
+     */
+    public JsonNode listPlaylist(String url, int maxVideos) throws Exception {
+        List<String> command = new ArrayList<>(List.of(
+                "C:\\666_sdk\\yt-dlp.exe",
+                "--cookies", "C:\\666_sdk\\cookies.txt",
+                "--flat-playlist",
+                "--dump-single-json"));
+        if (maxVideos > 0) {
+            command.add("--playlist-end");
+            command.add(String.valueOf(maxVideos));
+        }
+        command.add(url);
+
+        // Flat entries are small, a tree is fine here
+        AtomicReference<JsonNode> playlist = new AtomicReference<>();
+        int exitCode = run(YtDlpScheduler.Priority.METADATA, new ProcessBuilder(command), line -> {
+            if (playlist.get() == null && line.trim().startsWith("{")) {
+                playlist.set(objectMapper.readTree(line));
+            }
+        });
+
+        if (exitCode != 0) {
+            throw new RuntimeException("yt-dlp failed with exit code " + exitCode);
+        }
+        if (playlist.get() == null) {
+            throw new RuntimeException("No JSON output from yt-dlp");
+        }
+        return playlist.get();
+    }
+
+    /**
+     * Metadata and subtitles in one yt-dlp run: the subtitle command plus
+     * --write-info-json, whose file is read back (and removed) afterwards.
+     * The info JSON gets a name unique to the run, so concurrent runs never
+     * read (or delete) each other's.
+     *
+     * @param videoId the id if already known from the URL, otherwise the
+     *                files go to the storage root (to be moved into place
+     *                by the caller)
+     */
+    public VideoMeta fetchInfoAndSubtitles(String url, String videoId) throws Exception {
+        File dir = videoId != null ? storage.dirFor(videoId) : storage.root();
+
+        String runId = UUID.randomUUID().toString().substring(0, 8);
+        String infoSuffix = "." + runId + ".info.json";
+        ProcessBuilder pb = subtitleCommand(url, dir.getPath() + File.separator + "%(id)s.%(ext)s");
+        List<String> command = pb.command();
+        command.addAll(command.size() - 1, List.of("--write-info-json",
+                "-o", "infojson:" + dir.getPath() + File.separator + "%(id)s." + runId + ".%(ext)s"));
+        int exitCode = run(YtDlpScheduler.Priority.SUBTITLE, pb, ProcessRunner.LineConsumer.DISCARD);
+
+        File infoFile = videoId != null ? new File(dir, videoId + infoSuffix) : findInfoJson(dir, infoSuffix);
+        if (infoFile == null || !infoFile.exists()) {
+            throw new RuntimeException("yt-dlp wrote no info JSON (exit code " + exitCode + ")");
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(infoFile)) {
+            return readMeta(parser);
+        } finally {
+            infoFile.delete();
+        }
+    }
+
+    /**
+     * Pick the top-level id, title and duration out of a yt-dlp info object,
+     * stopping as soon as all three were seen.
+     */
+    static VideoMeta readMeta(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("yt-dlp output is not a JSON object");
+        }
+        String id = null;
+        String title = null;
+        Long duration = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "id":
+                    id = parser.getValueAsString();
+                    break;
+                case "title":
+                    title = parser.getValueAsString();
+                    break;
+                case "duration":
+                    duration = parser.getValueAsLong(0);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+            if (id != null && title != null && duration != null)
+                break;
+        }
+        if (id == null) {
+            throw new IOException("yt-dlp output has no id");
+        }
+        return new VideoMeta(id, title != null ? title : "", duration != null ? duration : 0,
+                System.currentTimeMillis());
+    }
 
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
-        return process;
+    private static File findInfoJson(File dir, String suffix) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(suffix));
+        return files != null && files.length > 0 ? files[0] : null;
+    }
+
+    private static ProcessBuilder subtitleCommand(String url, String outputTemplate) {
+        return new ProcessBuilder(new ArrayList<>(List.of(
+                "C:\\666_sdk\\yt-dlp.exe",
+                "--cookies", "C:\\666_sdk\\cookies.txt", // User provided
+                "--js-runtimes", "node", // User provided
+                "--skip-download",
+                "--write-sub",
+                "--write-auto-sub",
+                "--sub-format", "srt", // Force convert to SRT
+                "--sub-lang", "zh-Hans,ja", // Try English, fallback to Japanese
+                "-o", outputTemplate,
+                url)));
+    }
+
+    /**
+     * Run yt-dlp through the scheduler. stdout goes to the consumer, stderr
+     * to the log; the run deadline of the priority applies to the whole
+     * call, so a hung process cannot block a reader.
+     *
+     * @return the exit code
+     */
+    private int run(YtDlpScheduler.Priority priority, ProcessBuilder pb, ProcessRunner.LineConsumer stdout)
+            throws Exception {
+        AtomicReference<String> lastError = new AtomicReference<>();
+        int exitCode = scheduler.run(priority, pb, process -> ProcessRunner.run(process, stdout, line -> {
+            logger.fine("[yt-dlp] " + line);
+            lastError.set(line);
+        }, scheduler.getRunMs(priority)));
+        if (exitCode != 0 && lastError.get() != null) {
+            logger.warning("yt-dlp exited with " + exitCode + ": " + lastError.get());
+        }
+        return exitCode;
     }
 }
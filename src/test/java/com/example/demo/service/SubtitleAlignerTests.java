@@ -0,0 +1,153 @@
+package com.example.demo.service;
+
+import com.example.demo.model.subtitle.SubtitleTrack;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SubtitleAlignerTests {
+
+    // The original nested scan: first target (in list order) within 200 ms
+    private static void alignNested(SubtitleTrack source, SubtitleTrack target) {
+        for (int i = 0; i < source.size(); i++) {
+            for (int j = 0; j < target.size(); j++) {
+                if (Math.abs(source.getStartTime(i) - target.getStartTime(j)) < 200) {
+                    if (source.getTranslationLength(i) == 0)
+                        source.setTranslation(i, target.getOriginal(j));
+                    break;
+                }
+            }
+        }
+    }
+
+    // Every target against every source, largest overlap wins
+    private static void alignOverlapNested(SubtitleTrack source, SubtitleTrack target) {
+        long[] bestScore = new long[source.size()];
+        int[] match = new int[source.size()];
+        Arrays.fill(match, -1);
+        for (int j = 0; j < target.size(); j++) {
+            long tStart = target.getStartTime(j);
+            long tEnd = target.getEndTime(j);
+            int best = -1;
+            long bestOverlap = 0;
+            for (int i = 0; i < source.size(); i++) {
+                long overlap = Math.min(tEnd, source.getEndTime(i)) - Math.max(tStart, source.getStartTime(i));
+                if (overlap > bestOverlap) {
+                    bestOverlap = overlap;
+                    best = i;
+                }
+            }
+            if (best >= 0 && bestOverlap >= 0.5 * Math.max(1, tEnd - tStart) && bestOverlap > bestScore[best]) {
+                bestScore[best] = bestOverlap;
+                match[best] = j;
+            }
+        }
+        for (int i = 0; i < source.size(); i++) {
+            if (match[i] >= 0)
+                source.setTranslation(i, target.getOriginal(match[i]));
+        }
+    }
+
+    private static SubtitleTrack randomTrack(Random random, int size, String prefix, long maxDuration) {
+        SubtitleTrack track = new SubtitleTrack();
+        long start = 0;
+        for (int i = 0; i < size; i++) {
+            start += random.nextInt(1500);
+            track.add(i + 1, start, start + 1 + random.nextInt((int) maxDuration), prefix + i);
+        }
+        return track;
+    }
+
+    private static SubtitleTrack copy(SubtitleTrack track) {
+        SubtitleTrack copy = new SubtitleTrack();
+        for (int i = 0; i < track.size(); i++) {
+            copy.addRow(track, i);
+        }
+        return copy;
+    }
+
+    private static void assertSameTranslations(SubtitleTrack expected, SubtitleTrack actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getTranslation(i), actual.getTranslation(i), "row " + i);
+        }
+    }
+
+    @Test
+    public void startModeMatchesNestedScan() {
+        Random random = new Random(4);
+        for (int round = 0; round < 50; round++) {
+            SubtitleTrack source = randomTrack(random, 200, "s", 3000);
+            SubtitleTrack target = randomTrack(random, 200, "t", 3000);
+            SubtitleTrack expected = copy(source);
+            alignNested(expected, target);
+
+            new SubtitleAligner(200, SubtitleAligner.Mode.START, false).align(source, target);
+            assertSameTranslations(expected, source);
+        }
+    }
+
+    @Test
+    public void startModeMatchesNestedScanOnUnsortedTarget() {
+        Random random = new Random(5);
+        SubtitleTrack source = randomTrack(random, 300, "s", 3000);
+        SubtitleTrack sorted = randomTrack(random, 300, "t", 3000);
+        SubtitleTrack target = new SubtitleTrack();
+        for (int i = sorted.size() - 1; i >= 0; i--) {
+            target.addRow(sorted, i);
+        }
+        SubtitleTrack expected = copy(source);
+        alignNested(expected, target);
+
+        new SubtitleAligner(200, SubtitleAligner.Mode.START, false).align(source, target);
+        assertSameTranslations(expected, source);
+    }
+
+    @Test
+    public void overlapModeMatchesNestedScan() {
+        Random random = new Random(6);
+        for (int round = 0; round < 50; round++) {
+            // One cue across the whole track, which every target overlaps
+            SubtitleTrack source = new SubtitleTrack();
+            source.add(0, 0, Long.MAX_VALUE / 2, "long");
+            SubtitleTrack cues = randomTrack(random, 200, "s", 5000);
+            for (int i = 0; i < cues.size(); i++) {
+                source.addRow(cues, i);
+            }
+            SubtitleTrack target = randomTrack(random, 200, "t", 3000);
+            SubtitleTrack expected = copy(source);
+            alignOverlapNested(expected, target);
+
+            new SubtitleAligner(200, SubtitleAligner.Mode.OVERLAP, false).align(source, target);
+            assertSameTranslations(expected, source);
+        }
+    }
+
+    @Test
+    public void overlapAndStartAgreeOnAlignedTracks() {
+        // Same cues in both languages, starts shifted by less than the tolerance
+        Random random = new Random(7);
+        SubtitleTrack source = new SubtitleTrack();
+        SubtitleTrack target = new SubtitleTrack();
+        long start = 1000;
+        for (int i = 0; i < 500; i++) {
+            long duration = 800 + random.nextInt(3000);
+            source.add(i + 1, start, start + duration, "s" + i);
+            long shift = random.nextInt(399) - 199;
+            target.add(i + 1, start + shift, start + shift + duration, "t" + i);
+            start += duration + 400 + random.nextInt(1000);
+        }
+        SubtitleTrack byStart = copy(source);
+        SubtitleTrack byOverlap = copy(source);
+        SubtitleTrack expected = copy(source);
+        alignNested(expected, target);
+
+        assertEquals(500, new SubtitleAligner(200, SubtitleAligner.Mode.START, false).align(byStart, target));
+        assertEquals(500, new SubtitleAligner(200, SubtitleAligner.Mode.OVERLAP, false).align(byOverlap, target));
+        assertSameTranslations(expected, byStart);
+        assertSameTranslations(expected, byOverlap);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.demo.utils;
+
+import com.example.demo.model.subtitle.VideoInfoVO;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SrtParserTests {
+
+    private static final String[] FIXTURES = {
+            // Plain
+            "1\n00:00:01,000 --> 00:00:04,500\nHello\n\n2\n00:00:05,000 --> 00:00:07,250\nWorld\n",
+            // CRLF, BOM, multi-line text, Japanese
+            "\uFEFF1\r\n00:00:01,000 --> 00:00:02,000\r\n日本語の字幕\r\n二行目\r\n\r\n2\r\n00:00:03,000 --> 00:00:04,000\r\nnext\r\n",
+            // Fraction digits count as milliseconds, "MM:SS" is not a time
+            "1\n00:00:01,5 --> 00:00:02.05\nshort fraction\n\n2\n00:01,000 --> 00:02,000\nminutes only\n\n"
+                    + "3\n00:00:01,12345 --> 00:00:02,\nlong fraction\n",
+            // Position settings after the end time, extra arrows, arrow only
+            "1\n00:00:01,000 --> 00:00:02,000 align:start position:10%\nsettings\n\n"
+                    + "2\n00:00:03,000 --> 00:00:04,000 --> 00:00:09,000\ntwo arrows\n\n"
+                    + "3\n00:00:05,000 -->\nno end\n\n4\n-->\nbare arrow\n\n5\n00:00:06,000 -->-->\narrows\n",
+            // Tags: on one line, across lines, unclosed
+            "1\n00:00:01,000 --> 00:00:02,000\n<i>italic</i> <font color=\"red\">red</font>\n\n"
+                    + "2\n00:00:03,000 --> 00:00:04,000\n<font\ncolor=x>spans lines\n\n"
+                    + "3\n00:00:05,000 --> 00:00:06,000\na < b\nc > d\n\n"
+                    + "4\n00:00:07,000 --> 00:00:08,000\n1 < 2 and no close\n\n5\n00:00:09,000 --> 00:00:10,000\n<b></b>\n",
+            // Missing index, overflowing index, 10 digit index, text before the time
+            "00:00:01,000 --> 00:00:02,000\nno index\n\n99999999999\n00:00:03,000 --> 00:00:04,000\nbig index\n\n"
+                    + "2147483647\n00:00:05,000 --> 00:00:06,000\nmax index\n\n"
+                    + "7\nstray text\n00:00:07,000 --> 00:00:08,000\nafter stray\n",
+            // Signs, trailing colons, separators, blanks inside fields
+            "1\n+00:00:01,000 --> -00:00:01,000\nsigns\n\n2\n00:00:02,000: --> 00:00:03,000::\ncolons\n\n"
+                    + "3\n00:00:04..5 --> 00:00:05.,\nseparators\n\n4\n00: 00:06,000 --> 00:00:07 ,000\nblanks\n\n"
+                    + "5\n::, --> .\nnothing\n",
+            // No trailing newline, empty cue, whitespace only lines
+            "1\n00:00:01,000 --> 00:00:02,000\n\n2\n00:00:03,000 --> 00:00:04,000\n   \t\n\n3\n00:00:05,000 --> 00:00:06,000\nlast",
+    };
+
+    // Pieces the random files are built from
+    private static final String[] LINES = {
+            "", "", "1", "42", "00:00:01,000 --> 00:00:02,000", "00:00:03,5 --> 00:00:04,25",
+            "00:05,000 --> 00:06,000", "00:00:07,000 --> 00:00:08,000 line:90%", "-->", "text", "日本語",
+            "<i>tag</i>", "<open", "close>", "a < b", "  padded  ", "00:00:09,000-->00:00:10,000",
+    };
+
+    private static List<VideoInfoVO.SubtitleItemVO> byteParser(File file) throws IOException {
+        List<VideoInfoVO.SubtitleItemVO> cues = new ArrayList<>();
+        try (CueReader reader = SrtCueReader.open(file)) {
+            reader.forEachRemaining(cues::add);
+        }
+        return cues;
+    }
+
+    private static void assertSameCues(String srt) throws IOException {
+        Path path = Files.createTempFile("srt-parser", ".srt");
+        try {
+            Files.write(path, srt.getBytes(StandardCharsets.UTF_8));
+            List<VideoInfoVO.SubtitleItemVO> expected = new SrtParser().parseLines(path.toFile());
+            List<VideoInfoVO.SubtitleItemVO> actual = byteParser(path.toFile());
+            assertEquals(describe(expected), describe(actual), srt);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static List<String> describe(List<VideoInfoVO.SubtitleItemVO> cues) {
+        List<String> lines = new ArrayList<>();
+        for (VideoInfoVO.SubtitleItemVO cue : cues) {
+            lines.add(cue.getIndex() + " " + cue.getStartTime() + " " + cue.getEndTime() + " " + cue.getOriginal());
+        }
+        return lines;
+    }
+
+    @Test
+    public void fixturesParseTheSameWithBothParsers() throws IOException {
+        for (String srt : FIXTURES) {
+            assertSameCues(srt);
+        }
+    }
+
+    @Test
+    public void randomFilesParseTheSameWithBothParsers() throws IOException {
+        Random random = new Random(1);
+        for (int round = 0; round < 300; round++) {
+            StringBuilder srt = new StringBuilder();
+            for (int i = random.nextInt(40); i > 0; i--) {
+                srt.append(LINES[random.nextInt(LINES.length)]).append(random.nextInt(4) == 0 ? "\r\n" : "\n");
+            }
+            assertSameCues(srt.toString());
+        }
+    }
+
+    @Test
+    public void fractionDigitsAreMilliseconds() throws IOException {
+        Path path = Files.createTempFile("srt-parser", ".srt");
+        try {
+            Files.write(path, "1\n00:00:01,5 --> 00:00:02,500\nx\n".getBytes(StandardCharsets.UTF_8));
+            VideoInfoVO.SubtitleItemVO cue = byteParser(path.toFile()).get(0);
+            assertEquals(1005L, cue.getStartTime());
+            assertEquals(2500L, cue.getEndTime());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.demo.utils;
+
+import com.example.demo.model.subtitle.SubtitleTrack;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SubtitleTrackFileTests {
+
+    // Checkpoints are written every 64 cues
+    private static final int INTERVAL = 64;
+
+    private static SubtitleTrackFile.View roundTrip(SubtitleTrack track, String key) throws IOException {
+        Path path = Files.createTempFile("track", ".track.bin");
+        // Cues are read from the file on demand, so it stays until the end
+        path.toFile().deleteOnExit();
+        SubtitleTrackFile.write(track, key, path);
+        return SubtitleTrackFile.read(path);
+    }
+
+    private static void assertSameRows(SubtitleTrack expected, int from, SubtitleTrack actual) {
+        for (int i = 0; i < actual.size(); i++) {
+            int row = from + i;
+            assertEquals(expected.getIndex(row), actual.getIndex(i), "index of row " + row);
+            assertEquals(expected.getStartTime(row), actual.getStartTime(i), "start of row " + row);
+            assertEquals(expected.getEndTime(row), actual.getEndTime(i), "end of row " + row);
+            assertEquals(expected.getOriginal(row), actual.getOriginal(i), "original of row " + row);
+            assertEquals(expected.getTranslation(row), actual.getTranslation(i), "translation of row " + row);
+        }
+    }
+
+    @Test
+    public void roundTripsAcrossCheckpoints() throws IOException {
+        // Deltas of both signs and large values, so varints take several bytes
+        Random random = new Random(9);
+        SubtitleTrack track = new SubtitleTrack();
+        long start = 0;
+        for (int i = 0; i < 5 * INTERVAL + 7; i++) {
+            start += random.nextInt(5000) - 500 + (i % 50 == 0 ? 3_600_000L : 0);
+            int row = track.add(i % 17 == 0 ? i + 100 : i + 1, start, start + random.nextInt(8000),
+                    "原文 " + i + " <" + "x".repeat(random.nextInt(200)) + ">");
+            if (i % 3 == 0)
+                track.setTranslation(row, i % 9 == 0 ? "" : "訳 " + i);
+        }
+        SubtitleTrackFile.View view = roundTrip(track, "key|v1");
+
+        assertEquals("key|v1", view.getKey());
+        assertEquals(track.size(), view.size());
+        assertSameRows(track, 0, view.toTrack());
+        for (int row : new int[] { 0, INTERVAL - 1, INTERVAL, INTERVAL + 1, 2 * INTERVAL, track.size() - 1 }) {
+            assertEquals(track.getStartTime(row), view.getStartTime(row), "start of row " + row);
+            assertEquals(track.getEndTime(row), view.getEndTime(row), "end of row " + row);
+            assertEquals(track.getIndex(row), view.getIndex(row), "index of row " + row);
+            assertEquals(track.getOriginal(row), view.getOriginal(row), "original of row " + row);
+            assertEquals(track.getTranslation(row), view.getTranslation(row), "translation of row " + row);
+        }
+
+        // Slices starting and ending on both sides of a checkpoint
+        int[][] ranges = { { INTERVAL - 3, INTERVAL + 3 }, { INTERVAL, 2 * INTERVAL }, { 2 * INTERVAL - 1,
+                3 * INTERVAL + 1 }, { track.size() - 5, track.size() + 10 }, { 5, 5 } };
+        for (int[] range : ranges) {
+            SubtitleTrack slice = view.slice(range[0], range[1]);
+            assertEquals(Math.max(0, Math.min(track.size(), range[1]) - range[0]), slice.size());
+            assertSameRows(track, range[0], slice);
+        }
+    }
+
+    @Test
+    public void rowAtFindsTheFirstCueStartingAtOrAfter() throws IOException {
+        SubtitleTrack track = new SubtitleTrack();
+        for (int i = 0; i < 3 * INTERVAL + 10; i++) {
+            track.add(i + 1, i * 100L, i * 100L + 50, "cue " + i);
+        }
+        SubtitleTrackFile.View view = roundTrip(track, "");
+
+        assertEquals(0, view.rowAt(-5));
+        assertEquals(0, view.rowAt(0));
+        assertEquals(1, view.rowAt(1));
+        assertEquals(INTERVAL - 1, view.rowAt((INTERVAL - 1) * 100L));
+        assertEquals(INTERVAL, view.rowAt((INTERVAL - 1) * 100L + 1));
+        assertEquals(INTERVAL, view.rowAt(INTERVAL * 100L));
+        assertEquals(INTERVAL + 1, view.rowAt(INTERVAL * 100L + 1));
+        assertEquals(track.size() - 1, view.rowAt((track.size() - 1) * 100L));
+        assertEquals(track.size(), view.rowAt((track.size() - 1) * 100L + 1));
+    }
+
+    @Test
+    public void roundTripsWithoutTranslations() throws IOException {
+        SubtitleTrack track = new SubtitleTrack();
+        for (int i = 0; i < INTERVAL + 1; i++) {
+            track.add(i + 1, 1000L * i, 1000L * i + 900, "only original " + i);
+        }
+        SubtitleTrackFile.View view = roundTrip(track, null);
+
+        assertEquals("", view.getKey());
+        SubtitleTrack read = view.toTrack();
+        assertEquals(track.size(), read.size());
+        assertSameRows(track, 0, read);
+        assertNull(view.getTranslation(INTERVAL));
+        assertEquals(INTERVAL * 1000L + 900, view.getEndTime(INTERVAL));
+    }
+
+    @Test
+    public void roundTripsAnEmptyTrack() throws IOException {
+        SubtitleTrackFile.View view = roundTrip(new SubtitleTrack(), "empty");
+
+        assertEquals(0, view.size());
+        assertEquals(0, view.toTrack().size());
+        assertEquals(0, view.rowAt(1000));
+    }
+}